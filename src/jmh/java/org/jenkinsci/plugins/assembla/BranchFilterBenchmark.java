@@ -0,0 +1,92 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link BranchFilter} with splitting {@code branchesToBuild} on every push, as
+ * {@link AssemblaBuildTrigger#handlePush} did before. Half of the entries are exact names, the other half globs,
+ * plus one exclusion.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BranchFilterBenchmark {
+    @Param({"10", "100", "500"})
+    public int patterns;
+
+    public String exactSpec;
+    public String globSpec;
+    public BranchFilter exactFilter;
+    public BranchFilter globFilter;
+
+    public String hit;
+    public String globHit;
+    public String miss = "feature/unrelated-work";
+
+    @Setup
+    public void setUp() {
+        StringBuilder exact = new StringBuilder();
+        StringBuilder globs = new StringBuilder("!team-0/wip-*");
+        for (int i = 0; i < patterns; i++) {
+            exact.append(i == 0 ? "" : ",").append("branch-").append(i);
+            globs.append(",branch-").append(i).append(",team-").append(i).append("/*");
+        }
+
+        exactSpec = exact.toString();
+        globSpec = globs.toString();
+        exactFilter = BranchFilter.compile(exactSpec);
+        globFilter = BranchFilter.compile(globSpec);
+
+        hit = "branch-" + (patterns - 1);
+        globHit = "team-" + (patterns - 1) + "/feature";
+    }
+
+    @Benchmark
+    public boolean splitListHit() {
+        List<String> branches = Arrays.asList(exactSpec.split(","));
+        return branches.contains(hit);
+    }
+
+    @Benchmark
+    public boolean splitListMiss() {
+        List<String> branches = Arrays.asList(exactSpec.split(","));
+        return branches.contains(miss);
+    }
+
+    @Benchmark
+    public boolean compiledExactHit() {
+        return exactFilter.matches(hit);
+    }
+
+    @Benchmark
+    public boolean compiledExactMiss() {
+        return exactFilter.matches(miss);
+    }
+
+    @Benchmark
+    public boolean compiledGlobHit() {
+        return globFilter.matches(globHit);
+    }
+
+    @Benchmark
+    public boolean compiledGlobMiss() {
+        return globFilter.matches(miss);
+    }
+}
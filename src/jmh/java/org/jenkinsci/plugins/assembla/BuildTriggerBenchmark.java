@@ -0,0 +1,192 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
+import hudson.model.ParameterValue;
+import hudson.model.ParametersDefinitionProperty;
+import hudson.model.StringParameterDefinition;
+import hudson.model.TaskListener;
+import org.jenkinsci.plugins.assembla.cause.AssemblaMergeRequestCause;
+import org.jenkinsci.plugins.assembla.cause.AssemblaPushCause;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trigger lookup, build parameters and message templates. Runs against a real Jenkins started by
+ * {@link JenkinsRule}, so a fork takes a while to set up.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildTriggerBenchmark {
+    private static final String SPACE = "space-name";
+    private static final String REPO = "git";
+    private static final String TEMPLATE = "$jobName #$BUILD_NUMBER build finished with status: $buildStatus, see $buildUrl";
+    private static final String PLAIN_TEMPLATE = "$jobName build finished with status: $buildStatus, see $buildUrl";
+
+    /**
+     * Number of jobs with a trigger in the benchmarked space; every tenth of them builds the benchmarked repository.
+     */
+    @Param({"10", "100"})
+    public int jobs;
+
+    private final JenkinsRule jenkinsRule = new JenkinsRule();
+    private final CountDownLatch stopJenkins = new CountDownLatch(1);
+    private Thread jenkinsThread;
+
+    private AssemblaBuildTrigger trigger;
+    private AssemblaBuildReporter reporter;
+    private AssemblaWebhook webhook;
+    private FreeStyleBuild build;
+    private AssemblaMergeRequestCause mergeRequestCause;
+    private AssemblaPushCause pushCause;
+    private Map<String, String> variables;
+    private MessageTemplate template;
+    private MessageTemplate plainTemplate;
+    private MessageTemplate.Variables templateVariables;
+
+    @Setup
+    public void setUp() throws Throwable {
+        startJenkins();
+
+        for (int i = 0; i < jobs; i++) {
+            FreeStyleProject project = jenkinsRule.createFreeStyleProject("job-" + i);
+            AssemblaBuildTrigger projectTrigger = newTrigger(i % 10 == 0 ? REPO : REPO + "-" + i);
+            project.addProperty(new ParametersDefinitionProperty(
+                    new StringParameterDefinition("GOAL", "verify", ""),
+                    new StringParameterDefinition("PROFILE", "ci", ""),
+                    new StringParameterDefinition("TIMEOUT", "30", "")
+            ));
+            project.addTrigger(projectTrigger);
+            projectTrigger.start(project, true);
+
+            if (i == 0) {
+                trigger = projectTrigger;
+                build = jenkinsRule.buildAndAssertSuccess(project);
+            }
+        }
+
+        webhook = new AssemblaWebhook();
+        reporter = new AssemblaBuildReporter(trigger);
+        mergeRequestCause = new AssemblaMergeRequestCause(2945043, "git@git.assembla.com:pavel-test.git", REPO,
+                "feature", "git@git.assembla.com:pavel-test.git", "master", "276dc190d87eff3d28fdfad2d1e6a08a672efe13",
+                "Catalog pages are gone", SPACE, "Redirect all old catalog pages", "pavel.d", "updated");
+        pushCause = new AssemblaPushCause("git@git.assembla.com:pavel-test.git", REPO, "master",
+                "276dc190d87eff3d28fdfad2d1e6a08a672efe13", "Commit title", "Event body", SPACE, "pavel.d");
+
+        variables = new HashMap<>();
+        variables.put("jobName", "job-0");
+        variables.put("buildStatus", "SUCCESS");
+        variables.put("buildUrl", "http://localhost:8080/jenkins/job/job-0/1/");
+
+        template = MessageTemplate.compile(TEMPLATE);
+        plainTemplate = MessageTemplate.compile(PLAIN_TEMPLATE);
+        templateVariables = new MessageTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                return variables.get(name);
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        stopJenkins.countDown();
+        jenkinsThread.join();
+    }
+
+    /**
+     * Runs the rule the way JUnit does, so Jenkins gets a test description, and keeps it up until tear down.
+     */
+    private void startJenkins() throws Throwable {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Throwable[] failure = new Throwable[1];
+        jenkinsRule.timeout = 0;
+
+        jenkinsThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    jenkinsRule.apply(new Statement() {
+                        @Override
+                        public void evaluate() throws Throwable {
+                            started.countDown();
+                            stopJenkins.await();
+                        }
+                    }, Description.createTestDescription(BuildTriggerBenchmark.class, "benchmark")).evaluate();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                } finally {
+                    started.countDown();
+                }
+            }
+        }, "Benchmark Jenkins");
+        jenkinsThread.start();
+
+        started.await();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    @Benchmark
+    public List<AssemblaBuildTrigger> getTriggers() {
+        return webhook.getTriggers(SPACE, REPO);
+    }
+
+    @Benchmark
+    public Map<String, ParameterValue> mergeRequestParameters() {
+        return trigger.getDefaultParameters(mergeRequestCause);
+    }
+
+    @Benchmark
+    public Map<String, ParameterValue> pushParameters() {
+        return trigger.getDefaultParameters(pushCause);
+    }
+
+    @Benchmark
+    public String processTemplate() {
+        return reporter.processTemplate(TEMPLATE, build, TaskListener.NULL, variables);
+    }
+
+    @Benchmark
+    public String renderCompiledTemplate() {
+        return reporter.render(template, build, TaskListener.NULL, templateVariables);
+    }
+
+    /**
+     * No token macros left once the variables are replaced, so TokenMacro is skipped.
+     */
+    @Benchmark
+    public String renderCompiledPlainTemplate() {
+        return reporter.render(plainTemplate, build, TaskListener.NULL, templateVariables);
+    }
+
+    private static AssemblaBuildTrigger newTrigger(String repoName) {
+        return new AssemblaBuildTrigger(SPACE, repoName, true, true, true, true, false, false, true, "master", "",
+                "$jobName #$BUILD_NUMBER build started",
+                "$jobName #$BUILD_NUMBER build finished with status: $buildStatus");
+    }
+}
@@ -0,0 +1,122 @@
+package org.jenkinsci.plugins.assembla;
+
+import com.google.gson.Gson;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.SpaceTool;
+import org.jenkinsci.plugins.assembla.cause.AssemblaMergeRequestCause;
+import org.jenkinsci.plugins.assembla.cause.AssemblaPushCause;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Webhook decoding and cause construction, the part of the hot path that does not need Jenkins.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebhookPayloadBenchmark {
+    static final String MR_PAYLOAD = "{" +
+            "\"space\": \"pavel-test\", " +
+            "\"action\": \"updated\", " +
+            "\"object\": \"Merge request\", " +
+            "\"title\": \"Re: Merge Request 2945043: Redirect all old catalog pages to assembla.com/home\", " +
+            "\"body\": \"Pavel Dotsulenko (pavel.d) updated Merge Request 2945043 (6): Redirect all old catalog pages to assembla.com/home [+0] [-0]\\n\\n    New Version (6) Created\\n\", " +
+            "\"author\": \"pavel.d\", " +
+            "\"repository_suffix\": \"2\", " +
+            "\"repository_url\": \"git@git.assembla.com:pavel-test.2.git\", " +
+            "\"branch\": \"master\", " +
+            "\"commit_id\": \"276dc190d87eff3d28fdfad2d1e6a08a672efe13\"" +
+            "}";
+
+    static final String CHANGESET_PAYLOAD = "{" +
+            "\"space\": \"pavel-test\", " +
+            "\"action\": \"updated\", " +
+            "\"object\": \"Changeset\", " +
+            "\"title\": \"Commit title\", " +
+            "\"body\": \"Event Body\", " +
+            "\"author\": \"pavel.d\", " +
+            "\"repository_suffix\": \"2\", " +
+            "\"repository_url\": \"git@git.assembla.com:pavel-test.2.git\", " +
+            "\"branch\": \"master\", " +
+            "\"commit_id\": \"276dc190d87eff3d28fdfad2d1e6a08a672efe13\"" +
+            "}";
+
+    static final String MERGE_REQUEST = "{" +
+            "\"id\": 2945043, " +
+            "\"title\": \"Redirect all old catalog pages to assembla.com/home\", " +
+            "\"description\": \"Catalog pages are gone\", " +
+            "\"source_symbol\": \"catalog-redirect\", " +
+            "\"space_tool_id\": \"tool-1\", " +
+            "\"target_space_tool_id\": \"tool-1\", " +
+            "\"target_space_id\": \"space-1\", " +
+            "\"target_symbol\": \"master\", " +
+            "\"status\": 0" +
+            "}";
+
+    static final String SPACE_TOOL = "{" +
+            "\"id\": \"tool-1\", " +
+            "\"space_id\": \"space-1\", " +
+            "\"url\": \"git@git.assembla.com:pavel-test.2.git\", " +
+            "\"name\": \"git-2\", " +
+            "\"active\": true" +
+            "}";
+
+    private final WebhookPayloadReader reader = new WebhookPayloadReader();
+
+    private WebhookPayload mergeRequestPayload;
+    private WebhookPayload changesetPayload;
+    private MergeRequest mergeRequest;
+    private SpaceTool tool;
+
+    @Setup
+    public void setUp() throws IOException {
+        mergeRequestPayload = reader.read(new StringReader(MR_PAYLOAD));
+        changesetPayload = reader.read(new StringReader(CHANGESET_PAYLOAD));
+
+        Gson gson = new Gson();
+        mergeRequest = gson.fromJson(MERGE_REQUEST, MergeRequest.class);
+        tool = gson.fromJson(SPACE_TOOL, SpaceTool.class);
+    }
+
+    @Benchmark
+    public WebhookPayload decodeMergeRequest() throws IOException {
+        return reader.read(new StringReader(MR_PAYLOAD));
+    }
+
+    @Benchmark
+    public WebhookPayload decodeChangeset() throws IOException {
+        return reader.read(new StringReader(CHANGESET_PAYLOAD));
+    }
+
+    @Benchmark
+    public WebhookPayload classify() {
+        WebhookPayload p = mergeRequestPayload;
+        return new WebhookPayload(p.getSpaceName(), p.getAction(), p.getObject(), p.getTitle(), p.getBody(),
+                p.getAuthor(), p.getBranch(), p.getRepositoryUrl(), p.getCommitId());
+    }
+
+    @Benchmark
+    public AssemblaMergeRequestCause mergeRequestCause() {
+        return AssemblaMergeRequestCause.fromMergeRequest(mergeRequest, tool, tool, mergeRequestPayload);
+    }
+
+    @Benchmark
+    public AssemblaPushCause pushCause() {
+        return AssemblaPushCause.fromChangeset(tool, changesetPayload);
+    }
+}
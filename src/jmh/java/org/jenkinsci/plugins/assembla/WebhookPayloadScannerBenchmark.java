@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares {@link WebhookPayloadScanner} with the regular expressions {@link WebhookPayload} used before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebhookPayloadScannerBenchmark {
+    private static final Pattern WIKI_NAME_PATTERN = Pattern.compile("^[a-z0-9-/@:\\_-]+\\.assembla\\.com[:/](?:svn/)?(?:[a-z0-9\\_-]+[/^])?([a-z0-9\\_-]+).*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MERGE_REQUEST_ID_PATTERN = Pattern.compile("Merge Request (\\d+)");
+
+    @Param({
+            "git@git.assembla.com:pavel-test.2.git",
+            "git@eu-git.assembla.com:pavelportfolio/pavel-test.2.git",
+            "https://subversion.assembla.com/svn/gpcgames^apoc-auto",
+            "http://perforce-us-east.assembla.com/assembla-inc/damian-space2:12405"
+    })
+    public String repositoryUrl;
+
+    public String title = "Re: Merge Request 2945043: Redirect all old catalog pages to assembla.com/home";
+
+    @Benchmark
+    public String regexSpaceWikiName() {
+        Matcher m = WIKI_NAME_PATTERN.matcher(repositoryUrl);
+        return m.matches() ? m.group(1) : "";
+    }
+
+    @Benchmark
+    public String scannerSpaceWikiName() {
+        return WebhookPayloadScanner.parseSpaceWikiName(repositoryUrl);
+    }
+
+    @Benchmark
+    public Integer regexMergeRequestId() {
+        Matcher m = MERGE_REQUEST_ID_PATTERN.matcher(title);
+        return m.find() ? Integer.valueOf(m.group(1)) : null;
+    }
+
+    @Benchmark
+    public Integer scannerMergeRequestId() {
+        return WebhookPayloadScanner.parseMergeRequestId(title);
+    }
+}
@@ -4,36 +4,146 @@ import hudson.Extension;
 import hudson.model.AbstractBuild;
 import hudson.model.TaskListener;
 import hudson.model.listeners.RunListener;
+import hudson.util.LogTaskListener;
+import org.jenkinsci.plugins.assembla.cause.AssemblaMergeRequestCause;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Created by pavel on 18/2/16.
+ * <p>
+ * Reports are handed to a {@link ReportingOutbox} and run without the build's listener, which may be closed by then.
+ * Whatever the reporter writes to the listener, such as token macro and environment errors, goes to this class's
+ * logger instead of the build log.
+ * <p>
+ * Configuration runs of a multi-configuration build are not reported on their own: their results are collected
+ * and summarized in the report of the parent build.
  */
 @Extension
 public class AssemblaBuildListener extends RunListener<AbstractBuild> {
 
     private static final Logger LOGGER = Logger.getLogger(AssemblaBuildListener.class.getName());
 
+    static final int REPORTING_THREADS = Integer.getInteger(
+            AssemblaBuildListener.class.getName() + ".reportingThreads",
+            2
+    );
+
+    static final int MAX_PENDING_REPORTS = Integer.getInteger(
+            AssemblaBuildListener.class.getName() + ".maxPendingReports",
+            1000
+    );
+
+    private final ReportingOutbox outbox = new ReportingOutbox(REPORTING_THREADS, MAX_PENDING_REPORTS);
+    private final TaskListener reportListener = new LogTaskListener(LOGGER, Level.INFO);
+
+    // Parent build => configuration name => result, until the parent completes
+    private final ConcurrentMap<String, Map<String, ResultAggregator.JobResult>> configurations = new ConcurrentHashMap<>();
+
     @Override
-    public void onStarted(AbstractBuild abstractBuild, TaskListener listener) {
+    public void onStarted(final AbstractBuild abstractBuild, TaskListener listener) {
+        if (isConfigurationRun(abstractBuild)) {
+            return;
+        }
+
         AssemblaBuildTrigger trigger = AssemblaBuildTrigger.getTrigger(abstractBuild.getProject());
 
         if (trigger == null) {
             return;
         }
 
-        trigger.getBuildReporter().onStarted(abstractBuild, listener);
+        final AssemblaBuildReporter reporter = trigger.getBuildReporter();
+        outbox.submit(abstractBuild.getExternalizableId(), "start of " + abstractBuild, new Runnable() {
+            @Override
+            public void run() {
+                reporter.onStarted(abstractBuild, reportListener);
+            }
+        });
     }
 
     @Override
-    public void onCompleted(AbstractBuild abstractBuild, TaskListener listener) {
+    public void onCompleted(final AbstractBuild abstractBuild, TaskListener listener) {
+        if (isConfigurationRun(abstractBuild)) {
+            addConfiguration(abstractBuild);
+            return;
+        }
+
+        Map<String, ResultAggregator.JobResult> runs = configurations.remove(abstractBuild.getExternalizableId());
         AssemblaBuildTrigger trigger = AssemblaBuildTrigger.getTrigger(abstractBuild.getProject());
 
         if (trigger == null) {
             return;
         }
 
-        trigger.getBuildReporter().onCompleted(abstractBuild, listener);
+        final List<ResultAggregator.JobResult> results = runs == null ? null : getResults(runs);
+        final AssemblaBuildReporter reporter = trigger.getBuildReporter();
+        outbox.submit(abstractBuild.getExternalizableId(), "result of " + abstractBuild, new Runnable() {
+            @Override
+            public void run() {
+                if (results == null) {
+                    reporter.onCompleted(abstractBuild, reportListener);
+                } else {
+                    reporter.onCompleted(abstractBuild, reportListener, results);
+                }
+            }
+        });
+    }
+
+    private void addConfiguration(AbstractBuild run) {
+        AbstractBuild parent = run.getRootBuild();
+        if (AssemblaBuildTrigger.getTrigger(parent.getProject()) == null
+                || parent.getCause(AssemblaMergeRequestCause.class) == null) {
+            return;
+        }
+
+        String key = parent.getExternalizableId();
+        Map<String, ResultAggregator.JobResult> runs = configurations.get(key);
+        if (runs == null) {
+            Map<String, ResultAggregator.JobResult> created = Collections.synchronizedMap(
+                    new TreeMap<String, ResultAggregator.JobResult>()
+            );
+            runs = configurations.putIfAbsent(key, created);
+            if (runs == null) {
+                runs = created;
+            }
+        }
+
+        runs.put(run.getProject().getDisplayName(), new ResultAggregator.JobResult(
+                run.getProject().getDisplayName(),
+                run.getNumber(),
+                run.getResult(),
+                AssemblaBuildReporter.getBuildUrl(run)
+        ));
+        LOGGER.fine("Collected result of " + run + " for " + parent);
+    }
+
+    private static List<ResultAggregator.JobResult> getResults(Map<String, ResultAggregator.JobResult> runs) {
+        synchronized (runs) {
+            return new ArrayList<>(runs.values());
+        }
+    }
+
+    /**
+     * @return whether the build is a run of one configuration of a multi-configuration build
+     */
+    static boolean isConfigurationRun(AbstractBuild build) {
+        AbstractBuild root = build.getRootBuild();
+        return root != null && root != build;
+    }
+
+    public ReportingOutbox getOutbox() {
+        return outbox;
+    }
+
+    int getPendingConfigurationBuilds() {
+        return configurations.size();
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,5 @@
 package org.jenkinsci.plugins.assembla;
 
-import hudson.Util;
 import hudson.model.AbstractBuild;
 import hudson.model.Cause;
 import hudson.model.Result;
@@ -14,8 +13,11 @@ import org.jenkinsci.plugins.assembla.cause.AssemblaMergeRequestCause;
 import org.jenkinsci.plugins.tokenmacro.TokenMacro;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,32 +43,25 @@ public class AssemblaBuildReporter {
                 cause.getMergeRequestId()
             );
 
+            MessageTemplate.Variables variables = getVariables(cause, build, mr);
+
             if (trigger.isNotifyOnStartEnabled()) {
-                String startedMessage = processTemplate(
-                        trigger.getBuildStartedTemplate(),
-                        build,
-                        listener,
-                        getVariables(cause, build, mr)
-                );
+                String startedMessage = render(trigger.getStartedMessageTemplate(), build, listener, variables);
 
+                NotificationOutbox outbox = NotificationOutbox.get();
                 if (trigger.isTicketCommentsEnabled()) {
-                    for (Ticket ticket : client.getMergeRequestTickets(mr)) {
-                        client.createTicketComment(ticket, startedMessage);
+                    for (Ticket ticket : MergeRequestTickets.get(mr)) {
+                        outbox.createTicketComment(ticket, startedMessage);
                     }
                 }
 
                 if (trigger.isMergeRequestCommentsEnabled()) {
-                    client.commentMergeRequest(mr, client.getLatestVersion(mr), startedMessage);
+                    outbox.commentMergeRequest(mr, client.getLatestVersion(mr), startedMessage);
                 }
             }
 
             try {
-                String description = processTemplate(
-                        trigger.getBuildDescriptionTemplate(),
-                        build,
-                        listener,
-                        getVariables(cause, build, mr)
-                );
+                String description = render(trigger.getDescriptionMessageTemplate(), build, listener, variables);
 
                 build.setDescription(description);
             } catch (IOException e) {
@@ -76,6 +71,14 @@ public class AssemblaBuildReporter {
     }
 
     public void onCompleted(AbstractBuild build, TaskListener listener) {
+        onCompleted(build, listener, Collections.<ResultAggregator.JobResult>emptyList());
+    }
+
+    /**
+     * @param configurations results of the configurations of a multi-configuration build, summarized in the
+     *                       result message
+     */
+    public void onCompleted(AbstractBuild build, TaskListener listener, List<ResultAggregator.JobResult> configurations) {
         AssemblaMergeRequestCause cause = getCause(build);
         if (cause == null) {
             return;
@@ -96,28 +99,52 @@ public class AssemblaBuildReporter {
 
         Result result = build.getResult();
 
-        String message = processTemplate(
-                trigger.getBuildResultTemplate(),
+        AssemblaBuildTrigger.AssemblaBuildTriggerDescriptor descriptor = AssemblaBuildTrigger.getDesc();
+        if (descriptor.isAggregateResults()) {
+            MergeRequestVersion mrVersion = client.getLatestVersion(mr);
+            if (mrVersion != null) {
+                descriptor.getResultAggregator().add(
+                        mr,
+                        mrVersion,
+                        new ResultAggregator.JobResult(
+                                build.getProject().getFullDisplayName(), build.getNumber(), result, getBuildUrl(build),
+                                configurations
+                        ),
+                        trigger.isMergeRequestCommentsEnabled(),
+                        trigger.isTicketCommentsEnabled(),
+                        TimeUnit.SECONDS.toMillis(descriptor.getAggregationWindowSeconds())
+                );
+                return;
+            }
+        }
+
+        String message = render(
+                trigger.getResultMessageTemplate(),
                 build,
                 listener,
                 getVariables(cause, build, mr)
         );
+        if (!configurations.isEmpty()) {
+            String summary = ResultAggregator.getConfigurationSummary(configurations);
+            message = message == null ? summary : message + "\n\n" + summary;
+        }
 
+        NotificationOutbox outbox = NotificationOutbox.get();
         if (trigger.isMergeRequestCommentsEnabled()) {
             MergeRequestVersion mrVersion = client.getLatestVersion(mr);
 
-            client.commentMergeRequest(mr, mrVersion, message);
+            outbox.commentMergeRequest(mr, mrVersion, message);
 
             if (result == Result.SUCCESS) {
-                client.upVoteMergeRequest(mr, mrVersion);
+                outbox.upVoteMergeRequest(mr, mrVersion);
             } else if (result == Result.FAILURE || result == Result.UNSTABLE) {
-                client.downVoteMergeRequest(mr, mrVersion);
+                outbox.downVoteMergeRequest(mr, mrVersion);
             }
         }
 
         if (trigger.isTicketCommentsEnabled()) {
-          for (Ticket ticket : client.getMergeRequestTickets(mr)) {
-              client.createTicketComment(ticket, message);
+          for (Ticket ticket : MergeRequestTickets.get(mr)) {
+              outbox.createTicketComment(ticket, message);
           }
         }
 
@@ -134,7 +161,7 @@ public class AssemblaBuildReporter {
         return (AssemblaMergeRequestCause) cause;
     }
 
-    private String getBuildUrl(AbstractBuild build) {
+    static String getBuildUrl(AbstractBuild build) {
         return Jenkins.getInstance().getRootUrl() + build.getUrl();
     }
 
@@ -165,22 +192,52 @@ public class AssemblaBuildReporter {
         return returnString;
     }
 
-    private Map<String, String> getVariables(AssemblaMergeRequestCause c, AbstractBuild b, MergeRequest mr) {
-        Map<String, String> vars = new HashMap<>();
-        vars.put("mrTitle", c.getTitle());
-        vars.put("mrUrl", AssemblaBuildTrigger.getAssembla().getMergeRequestWebUrl(mr));
-        vars.put("mrId", Integer.toString(c.getMergeRequestId()));
-        vars.put("mrAbbrTitle", c.getAbbreviatedTitle());
-        vars.put("jobName", b.getProject().getDisplayName());
-        vars.put("buildUrl", getBuildUrl(b));
-        if (b.getResult() != null) {
-            vars.put("buildStatus", b.getResult().toString());
-        }
-        return vars;
+    /**
+     * Template variables, computed only when a template references them.
+     */
+    private MessageTemplate.Variables getVariables(final AssemblaMergeRequestCause c, final AbstractBuild b, final MergeRequest mr) {
+        return new MessageTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                switch (name) {
+                    case "mrTitle":
+                        return c.getTitle();
+                    case "mrUrl":
+                        return AssemblaBuildTrigger.getAssembla().getMergeRequestWebUrl(mr);
+                    case "mrId":
+                        return Integer.toString(c.getMergeRequestId());
+                    case "mrAbbrTitle":
+                        return c.getAbbreviatedTitle();
+                    case "jobName":
+                        return b.getProject().getDisplayName();
+                    case "buildUrl":
+                        return getBuildUrl(b);
+                    case "buildStatus":
+                        return b.getResult() == null ? null : b.getResult().toString();
+                    default:
+                        return null;
+                }
+            }
+        };
     }
 
-    private String processTemplate(String template, AbstractBuild build, TaskListener listener, Map<String,String> vars) {
-        String result = Util.replaceMacro(template, vars);
+    String processTemplate(String template, AbstractBuild build, TaskListener listener, final Map<String,String> vars) {
+        return render(MessageTemplate.compile(template), build, listener, new MessageTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                return vars.get(name);
+            }
+        });
+    }
+
+    /**
+     * Token macros are only expanded if the message still contains a {@code $} once variables are replaced.
+     */
+    String render(MessageTemplate template, AbstractBuild build, TaskListener listener, MessageTemplate.Variables vars) {
+        String result = template.render(vars);
+        if (result == null || result.indexOf('$') < 0) {
+            return result;
+        }
         return replaceMacros(build, listener, result);
     }
 }
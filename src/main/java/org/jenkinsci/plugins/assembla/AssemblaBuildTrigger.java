@@ -1,12 +1,17 @@
 package org.jenkinsci.plugins.assembla;
 
 import hudson.Extension;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
 import hudson.model.*;
 import hudson.model.queue.QueueTaskFuture;
 import hudson.triggers.Trigger;
 import hudson.triggers.TriggerDescriptor;
+import hudson.util.DaemonThreadFactory;
 import hudson.util.FormValidation;
+import hudson.util.NamingThreadFactory;
 import hudson.util.Secret;
+import jenkins.model.Jenkins;
 import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 import org.jenkinsci.plugins.assembla.api.AssemblaClient;
@@ -17,12 +22,22 @@ import org.jenkinsci.plugins.assembla.cause.AssemblaCause;
 import org.jenkinsci.plugins.assembla.cause.AssemblaMergeRequestCause;
 import org.jenkinsci.plugins.assembla.cause.AssemblaPushCause;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.logging.Logger;
 
 /**
@@ -32,6 +47,18 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
     @Extension
     public static final AssemblaBuildTriggerDescriptor DESCRIPTOR = new AssemblaBuildTriggerDescriptor();
     private static final Logger LOGGER = Logger.getLogger(AssemblaBuildTrigger.class.getName());
+
+    /**
+     * Parameter definitions whose default value only depends on the job configuration. Subclasses are left out,
+     * they may compute the default on every build.
+     */
+    private static final Set<Class<?>> STATIC_PARAMETER_DEFINITIONS = new HashSet<Class<?>>(Arrays.asList(
+            StringParameterDefinition.class,
+            TextParameterDefinition.class,
+            BooleanParameterDefinition.class,
+            ChoiceParameterDefinition.class,
+            PasswordParameterDefinition.class
+    ));
     private static AssemblaClient assemblaClient =  new AssemblaClient(
         DESCRIPTOR.getBotApiKey(),
         DESCRIPTOR.getBotApiSecret(),
@@ -58,7 +85,19 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
 
     private String branchesToBuild;
 
+    private boolean pollingEnabled;
+
+    private String includedPaths;
+    private String excludedPaths;
+
     private transient AssemblaBuildReporter buildReporter;
+    private transient BranchFilter branchFilter;
+    private transient PathFilter pathFilter;
+    private transient String projectKey;
+    private transient volatile Map<String, ParameterValue> defaultParameters;
+    private transient MessageTemplate descriptionMessageTemplate;
+    private transient MessageTemplate startedMessageTemplate;
+    private transient MessageTemplate resultMessageTemplate;
 
     @DataBoundConstructor
     public AssemblaBuildTrigger(String spaceName, String repoName,
@@ -92,15 +131,21 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
     public void start(AbstractProject<?, ?> project, boolean newInstance) {
         super.start(project, newInstance);
 
-        String name = project.getFullName();
-
         if (project.isDisabled()) {
-            LOGGER.info("Project is disabled, not starting trigger for job " + name);
+            LOGGER.fine("Project is disabled, not starting trigger for job " + project.getFullName());
+            return;
+        }
+
+        Jenkins jenkins = Jenkins.getInstance();
+        if (jenkins != null && jenkins.getInitLevel().compareTo(InitMilestone.JOB_LOADED) < 0) {
+            // Jenkins is loading jobs, AssemblaTriggerLoader registers all triggers at once afterwards
             return;
         }
 
         DESCRIPTOR.addRepoTrigger(this, super.job);
-        LOGGER.info("Trigger started for " + project.toString() + ". Repo name: " + repoName);
+        // A new instance means the configuration was saved, the repo may have changed
+        DESCRIPTOR.resolveRepo(this, newInstance);
+        LOGGER.fine("Trigger started for " + project + ". Repo name: " + repoName);
     }
 
     @Override
@@ -112,7 +157,25 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
     }
 
     public QueueTaskFuture<?> handleMergeRequest(AssemblaMergeRequestCause cause) {
-        if (!shouldMergeRequestTriggerBuild(cause)) {
+        return handleMergeRequest(cause, null);
+    }
+
+    /**
+     * @param changedPaths files changed by the merge request version, null to skip path filters
+     */
+    public QueueTaskFuture<?> handleMergeRequest(AssemblaMergeRequestCause cause, ChangedPaths changedPaths) {
+        BuildRequest request = prepareMergeRequest(cause, changedPaths);
+        return request == null ? null : request.schedule();
+    }
+
+    /**
+     * Decides whether the merge request event builds this job and computes the build parameters, without
+     * touching the build queue.
+     *
+     * @return the build to schedule, null if the event does not build this job
+     */
+    public BuildRequest prepareMergeRequest(AssemblaMergeRequestCause cause, ChangedPaths changedPaths) {
+        if (!shouldMergeRequestTriggerBuild(cause) || !hasRelevantChanges(changedPaths)) {
             return null;
         }
 
@@ -124,17 +187,31 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         values.put("assemblaTargetBranch", new StringParameterValue("assemblaTargetBranch", cause.getTargetBranch()));
 
         List<ParameterValue> listValues = new ArrayList<>(values.values());
-        return job.scheduleBuild2(0, cause, new SafeParametersAction(listValues));
+        return new BuildRequest(job, cause, new SafeParametersAction(listValues));
     }
 
     public QueueTaskFuture<?> handlePush(AssemblaPushCause cause) {
-        List<String> buildableBranches = Arrays.asList(branchesToBuild.split(","));
+        return handlePush(cause, null);
+    }
 
-        if (triggerOnPushEnabled && (buildableBranches.contains(cause.getSourceBranch()) || branchesToBuild.isEmpty())) {
+    /**
+     * @param changedPaths files changed by the pushed commit, null to skip path filters
+     */
+    public QueueTaskFuture<?> handlePush(AssemblaPushCause cause, ChangedPaths changedPaths) {
+        BuildRequest request = preparePush(cause, changedPaths);
+        return request == null ? null : request.schedule();
+    }
+
+    /**
+     * @return the build to schedule, null if the push does not build this job
+     * @see #prepareMergeRequest(AssemblaMergeRequestCause, ChangedPaths)
+     */
+    public BuildRequest preparePush(AssemblaPushCause cause, ChangedPaths changedPaths) {
+        if (triggerOnPushEnabled && getBranchFilter().matches(cause.getSourceBranch()) && hasRelevantChanges(changedPaths)) {
             Map<String, ParameterValue> values = getDefaultParameters(cause);
 
             List<ParameterValue> listValues = new ArrayList<>(values.values());
-            return job.scheduleBuild2(0, cause, new SafeParametersAction(listValues));
+            return new BuildRequest(job, cause, new SafeParametersAction(listValues));
         }
 
         return null;
@@ -165,6 +242,27 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         return buildResultTemplate;
     }
 
+    MessageTemplate getDescriptionMessageTemplate() {
+        if (descriptionMessageTemplate == null) {
+            descriptionMessageTemplate = MessageTemplate.compile(buildDescriptionTemplate);
+        }
+        return descriptionMessageTemplate;
+    }
+
+    MessageTemplate getStartedMessageTemplate() {
+        if (startedMessageTemplate == null) {
+            startedMessageTemplate = MessageTemplate.compile(buildStartedTemplate);
+        }
+        return startedMessageTemplate;
+    }
+
+    MessageTemplate getResultMessageTemplate() {
+        if (resultMessageTemplate == null) {
+            resultMessageTemplate = MessageTemplate.compile(buildResultTemplate);
+        }
+        return resultMessageTemplate;
+    }
+
     public boolean isMergeRequestCommentsEnabled() {
         return mergeRequestCommentsEnabled;
     }
@@ -189,6 +287,78 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         return branchesToBuild;
     }
 
+    String getProjectKey() {
+        if (projectKey == null) {
+            projectKey = DESCRIPTOR.getProjectKey(spaceName, repoName);
+        }
+        return projectKey;
+    }
+
+    BranchFilter getBranchFilter() {
+        if (branchFilter == null) {
+            try {
+                branchFilter = BranchFilter.compile(branchesToBuild);
+            } catch (PatternSyntaxException ex) {
+                LOGGER.log(Level.SEVERE, "Invalid branches to build for " + job + ", pushes will not be built", ex);
+                branchFilter = BranchFilter.compile("!**");
+            }
+        }
+        return branchFilter;
+    }
+
+    PathFilter getPathFilter() {
+        if (pathFilter == null) {
+            pathFilter = PathFilter.compile(includedPaths, excludedPaths);
+        }
+        return pathFilter;
+    }
+
+    /**
+     * Changed files are only fetched for triggers with path filters. Unknown changes count as relevant.
+     */
+    private boolean hasRelevantChanges(ChangedPaths changedPaths) {
+        if (changedPaths == null || getPathFilter().isEmpty()) {
+            return true;
+        }
+
+        List<String> paths = changedPaths.get();
+        if (paths == null || getPathFilter().matchesAny(paths)) {
+            return true;
+        }
+
+        LOGGER.info("No relevant changed files for " + job + ", not scheduling a build");
+        return false;
+    }
+
+    public String getIncludedPaths() {
+        return includedPaths;
+    }
+
+    @DataBoundSetter
+    public void setIncludedPaths(String includedPaths) {
+        this.includedPaths = includedPaths;
+        this.pathFilter = null;
+    }
+
+    public String getExcludedPaths() {
+        return excludedPaths;
+    }
+
+    @DataBoundSetter
+    public void setExcludedPaths(String excludedPaths) {
+        this.excludedPaths = excludedPaths;
+        this.pathFilter = null;
+    }
+
+    public boolean isPollingEnabled() {
+        return pollingEnabled;
+    }
+
+    @DataBoundSetter
+    public void setPollingEnabled(boolean pollingEnabled) {
+        this.pollingEnabled = pollingEnabled;
+    }
+
     public AssemblaBuildReporter getBuildReporter() {
         if (buildReporter == null) {
             buildReporter = new AssemblaBuildReporter(this);
@@ -215,6 +385,8 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
 
     public static void setAssembla(AssemblaClient client) {
         assemblaClient = client;
+        // Cached tickets came from the previous client
+        MergeRequestTickets.clear();
     }
 
     public static AssemblaBuildTrigger getTrigger(AbstractProject project) {
@@ -226,15 +398,8 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         return (AssemblaBuildTrigger) trigger;
     }
 
-    private Map<String, ParameterValue> getDefaultParameters(AssemblaCause cause) {
-        Map<String, ParameterValue> values = new HashMap<>();
-        ParametersDefinitionProperty definitionProperty = job.getProperty(ParametersDefinitionProperty.class);
-
-        if (definitionProperty != null) {
-            for (ParameterDefinition definition : definitionProperty.getParameterDefinitions()) {
-                values.put(definition.getName(), definition.getDefaultParameterValue());
-            }
-        }
+    Map<String, ParameterValue> getDefaultParameters(AssemblaCause cause) {
+        Map<String, ParameterValue> values = new HashMap<>(getJobDefaultParameters());
 
         values.put("assemblaRefName", new StringParameterValue("assemblaRefName", cause.getCommitId()));
         values.put("assemblaSourceSpaceId", new StringParameterValue("assemblaSourceSpaceId", cause.getSourceSpaceId()));
@@ -253,6 +418,41 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         return values;
     }
 
+    /**
+     * Default values of the job's parameter definitions. They are cached when every definition has a fixed default,
+     * see {@link #STATIC_PARAMETER_DEFINITIONS}, and evaluated on each call otherwise.
+     */
+    Map<String, ParameterValue> getJobDefaultParameters() {
+        Map<String, ParameterValue> cached = defaultParameters;
+        if (cached != null) {
+            return cached;
+        }
+
+        Map<String, ParameterValue> values = new HashMap<>();
+        boolean cacheable = true;
+        ParametersDefinitionProperty definitionProperty = job.getProperty(ParametersDefinitionProperty.class);
+
+        if (definitionProperty != null) {
+            for (ParameterDefinition definition : definitionProperty.getParameterDefinitions()) {
+                values.put(definition.getName(), definition.getDefaultParameterValue());
+                cacheable &= STATIC_PARAMETER_DEFINITIONS.contains(definition.getClass());
+            }
+        }
+
+        values = Collections.unmodifiableMap(values);
+        if (cacheable) {
+            defaultParameters = values;
+        }
+        return values;
+    }
+
+    /**
+     * Drops the cached default parameters, called when the job configuration changes.
+     */
+    void invalidateDefaultParameters() {
+        defaultParameters = null;
+    }
+
     private Boolean shouldMergeRequestTriggerBuild(AssemblaMergeRequestCause cause) {
         if ((cause.isCreated() || cause.isUpdated()) && buildOnMergeRequestEnabled) {
             return true;
@@ -267,6 +467,29 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         return false;
     }
 
+    /**
+     * Build prepared by a trigger, ready to be put into the queue.
+     */
+    public static class BuildRequest {
+        private final AbstractProject<?, ?> job;
+        private final AssemblaCause cause;
+        private final Action parameters;
+
+        BuildRequest(AbstractProject<?, ?> job, AssemblaCause cause, Action parameters) {
+            this.job = job;
+            this.cause = cause;
+            this.parameters = parameters;
+        }
+
+        public AbstractProject<?, ?> getJob() {
+            return job;
+        }
+
+        public QueueTaskFuture<?> schedule() {
+            return job.scheduleBuild2(0, cause, parameters);
+        }
+    }
+
     public static final class AssemblaBuildTriggerDescriptor extends TriggerDescriptor {
         private String assemblaHost = "https://app.assembla.com/";
         private String botApiKey = "";
@@ -274,11 +497,20 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
 
         private boolean ignoreSSLErrors;
 
-        private transient final Map<String, Set<AbstractProject<?, ?>>> repoJobs;
+        private boolean aggregateResults;
+        private int aggregationWindowSeconds = 60;
+
+        // Copy-on-write, webhook threads read whatever table is current without locking
+        private transient final AtomicReference<TriggerRoutingTable> routing;
+
+        private transient final Set<String> resolvingRepos = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private transient ExecutorService repoResolver;
+        private transient volatile Map<String, Object> registrationStats = Collections.emptyMap();
+        private transient ResultAggregator resultAggregator;
 
         public AssemblaBuildTriggerDescriptor() {
             load();
-            repoJobs = new ConcurrentHashMap<>();
+            routing = new AtomicReference<>(TriggerRoutingTable.EMPTY);
         }
 
         @Override
@@ -293,16 +525,34 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
 
         @Override
         public boolean configure(StaplerRequest req, JSONObject formData) throws FormException {
+            int windowSeconds = formData.optInt("aggregationWindowSeconds", 60);
+            if (windowSeconds <= 0) {
+                throw new FormException("Aggregation window must be a positive number of seconds", "aggregationWindowSeconds");
+            }
+
             botApiKey = formData.getString("botApiKey");
             botApiSecret = Secret.fromString(formData.getString("botApiSecret"));
             assemblaHost = formData.getString("assemblaHost");
             ignoreSSLErrors = formData.getBoolean("ignoreSSLErrors");
+            aggregateResults = formData.optBoolean("aggregateResults");
+            aggregationWindowSeconds = windowSeconds;
 
             save();
 
             return super.configure(req, formData);
         }
 
+        public FormValidation doCheckAggregationWindowSeconds(@QueryParameter String value) {
+            try {
+                if (Integer.parseInt(value) > 0) {
+                    return FormValidation.ok();
+                }
+            } catch (NumberFormatException ex) {
+                // Reported below
+            }
+            return FormValidation.error("Enter a positive number of seconds");
+        }
+
         public FormValidation doCheckBotApiKey(@QueryParameter String value) {
             if (value == null || value.isEmpty()) {
                 return FormValidation.error("You must provide an API key for the Jenkins user");
@@ -364,6 +614,10 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
                 return FormValidation.error("Failed to fetch space. Please check your connection settings");
             }
 
+            if (TriggerRoutingTable.isRepoPattern(repoName)) {
+                return doCheckRepoName(repoName);
+            }
+
             SpaceTool spaceTool;
             try {
                 spaceTool = getAssembla().getTool(spaceName, repoName);
@@ -382,43 +636,192 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
             return FormValidation.ok("It's all good!");
         }
 
+        public FormValidation doCheckRepoName(@QueryParameter String value) {
+            if (value != null && value.startsWith(":")) {
+                try {
+                    Pattern.compile(value.substring(1));
+                } catch (PatternSyntaxException ex) {
+                    return FormValidation.error("Invalid regular expression: " + ex.getDescription());
+                }
+            }
+            if (TriggerRoutingTable.isRepoPattern(value)) {
+                return FormValidation.ok("Builds every repo of the space matching the pattern");
+            }
+            return FormValidation.ok();
+        }
+
+        public FormValidation doCheckBranchesToBuild(@QueryParameter String value) {
+            try {
+                BranchFilter.compile(value);
+            } catch (PatternSyntaxException ex) {
+                return FormValidation.error("Invalid regular expression: " + ex.getDescription());
+            }
+            return FormValidation.ok();
+        }
+
         public void addRepoTrigger(AssemblaBuildTrigger trigger, AbstractProject<?, ?> project) {
             String projectKey = getProjectKey(trigger);
             if (project == null || StringUtils.isEmpty(projectKey)) {
                 return;
             }
-            LOGGER.info("Adding trigger for repo: " + projectKey);
+            LOGGER.fine("Adding trigger for repo: " + projectKey);
+            publish(new TriggerRoutingTable.Update().add(projectKey, project));
+        }
 
-            synchronized (repoJobs) {
-                Set<AbstractProject<?, ?>> projects = repoJobs.get(projectKey);
+        /**
+         * Replaces the routing table with the triggers of the given projects, built in a single pass.
+         * Used once all jobs are loaded, instead of registering every trigger as its job loads.
+         *
+         * @return number of registered triggers
+         */
+        public int registerAll(Collection<? extends AbstractProject> projects) {
+            long start = System.nanoTime();
+            TriggerRoutingTable.Update update = new TriggerRoutingTable.Update();
+            List<AssemblaBuildTrigger> triggers = new ArrayList<>();
+
+            for (AbstractProject<?, ?> project : projects) {
+                AssemblaBuildTrigger trigger = getTrigger(project);
+                if (trigger == null || project.isDisabled() || StringUtils.isEmpty(trigger.getRepoName())) {
+                    continue;
+                }
+                update.add(trigger.getProjectKey(), project);
+                triggers.add(trigger);
+            }
 
-                if (projects == null) {
-                    projects = new HashSet<>();
-                    repoJobs.put(projectKey, projects);
+            while (true) {
+                TriggerRoutingTable current = routing.get();
+                if (routing.compareAndSet(current, current.replace(update))) {
+                    break;
                 }
+            }
 
-                 projects.add(project);
+            for (AssemblaBuildTrigger trigger : triggers) {
+                resolveRepo(trigger, false);
             }
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("jobs", projects.size());
+            stats.put("triggers", triggers.size());
+            stats.put("repos", routing.get().size());
+            stats.put("registrationMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            registrationStats = stats;
+
+            return triggers.size();
+        }
+
+        /**
+         * Outcome of the last bulk registration, empty if there was none.
+         */
+        public Map<String, Object> getRegistrationStats() {
+            return registrationStats;
         }
 
         public void removeRepoTrigger(AssemblaBuildTrigger trigger, AbstractProject<?, ?> project) {
             String projectKey = getProjectKey(trigger);
-            Set<AbstractProject<?, ?>> projects = repoJobs.get(projectKey);
-            if (project == null || projects == null || StringUtils.isEmpty(projectKey)) {
+            if (project == null || StringUtils.isEmpty(projectKey)) {
                 return;
             }
-            LOGGER.info("Removing trigger for repo: " + projectKey);
-            projects.remove(project);
+            LOGGER.fine("Removing trigger for repo: " + projectKey);
+            publish(new TriggerRoutingTable.Update().remove(projectKey, project));
         }
 
-        public Set<AbstractProject<?, ?>> getRepoJobs(String spaceName, String repoName) {
-            Set<AbstractProject<?, ?>> projects = repoJobs.get(getProjectKey(spaceName, repoName));
+        private void publish(TriggerRoutingTable.Update update) {
+            while (true) {
+                TriggerRoutingTable current = routing.get();
+                if (routing.compareAndSet(current, current.apply(update))) {
+                    return;
+                }
+            }
+        }
 
-            if (projects == null) {
-                projects = new HashSet<>();
+        /**
+         * Looks up the trigger's space tool in the background and adds it to the routing table, so webhooks for
+         * the repo can be routed by URL. Until then, or if the lookup fails, webhooks fall back to the repo listing.
+         */
+        void resolveRepo(final AssemblaBuildTrigger trigger, boolean refresh) {
+            final String projectKey = getProjectKey(trigger);
+            if (StringUtils.isEmpty(trigger.getRepoName())
+                    || TriggerRoutingTable.isRepoPattern(trigger.getRepoName())
+                    || (!refresh && routing.get().getTool(projectKey) != null)
+                    || !resolvingRepos.add(projectKey)) {
+                return;
             }
 
-            return projects;
+            getRepoResolver().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        SpaceTool tool = getAssembla().getTool(trigger.getSpaceName(), trigger.getRepoName());
+                        if (tool != null) {
+                            publish(new TriggerRoutingTable.Update().resolve(projectKey, tool));
+                            LOGGER.fine("Resolved repo " + projectKey + " to tool " + tool.getId() + ", url: " + tool.getUrl());
+                        }
+                    } catch (RuntimeException ex) {
+                        LOGGER.log(Level.WARNING, "Failed to resolve repo " + projectKey + ", webhooks will look it up by URL", ex);
+                    } finally {
+                        resolvingRepos.remove(projectKey);
+                    }
+                }
+            });
+        }
+
+        private synchronized ExecutorService getRepoResolver() {
+            if (repoResolver == null) {
+                repoResolver = Executors.newSingleThreadExecutor(
+                        new NamingThreadFactory(new DaemonThreadFactory(), "Assembla repo resolver")
+                );
+            }
+            return repoResolver;
+        }
+
+        /**
+         * Waits until every repo lookup started so far has finished. The resolver runs lookups one at a time,
+         * so a no-op task completes only after all of them.
+         *
+         * @return false if the timeout elapsed first
+         */
+        boolean awaitRepoResolution(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+            try {
+                getRepoResolver().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                }).get(timeout, unit);
+                return true;
+            } catch (TimeoutException ex) {
+                return false;
+            }
+        }
+
+        public TriggerRoutingTable getRoutingTable() {
+            return routing.get();
+        }
+
+        /**
+         * Started triggers that poll Assembla for merge requests in addition to webhooks. Triggers with a repo
+         * pattern are left out, they do not name a repo to poll.
+         */
+        public List<AssemblaBuildTrigger> getPollingTriggers() {
+            List<AssemblaBuildTrigger> triggers = new ArrayList<>();
+
+            for (Set<AbstractProject<?, ?>> projects : routing.get().getAllJobs()) {
+                for (AbstractProject<?, ?> project : projects) {
+                    AssemblaBuildTrigger trigger = getTrigger(project);
+                    if (trigger != null && trigger.isPollingEnabled()
+                            && !TriggerRoutingTable.isRepoPattern(trigger.getRepoName())) {
+                        triggers.add(trigger);
+                    }
+                }
+            }
+
+            return triggers;
+        }
+
+        /**
+         * @return unmodifiable snapshot of the jobs listening to the repo, by name or by repo pattern
+         */
+        public Set<AbstractProject<?, ?>> getRepoJobs(String spaceName, String repoName) {
+            return routing.get().getMatchingJobs(spaceName, repoName);
         }
 
         public String getBotApiKey() {
@@ -433,10 +836,14 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         }
 
         private String getProjectKey(AssemblaBuildTrigger trigger) {
-            return getProjectKey(trigger.getSpaceName(), trigger.getRepoName());
+            return trigger.getProjectKey();
         }
 
-        private String getProjectKey(String spaceName, String repoName) {
+        String getProjectKey(String spaceName, String repoName) {
+            if (repoName != null && repoName.startsWith(":")) {
+                // Regular expressions are matched ignoring case, lower casing would change classes like \S
+                return spaceName.toLowerCase() + ":" + repoName;
+            }
             return (spaceName + ":" + repoName).toLowerCase();
         }
 
@@ -447,5 +854,26 @@ public class AssemblaBuildTrigger extends Trigger<AbstractProject<?, ?>> {
         public boolean isIgnoreSSLErrors() {
             return ignoreSSLErrors;
         }
+
+        /**
+         * Whether results of all jobs building a merge request version are reported in one comment and vote.
+         */
+        public boolean isAggregateResults() {
+            return aggregateResults;
+        }
+
+        public int getAggregationWindowSeconds() {
+            return aggregationWindowSeconds;
+        }
+
+        public synchronized ResultAggregator getResultAggregator() {
+            if (resultAggregator == null) {
+                resultAggregator = new ResultAggregator(
+                        new XmlFile(new File(Jenkins.getInstance().getRootDir(), "assembla-results.xml"))
+                );
+                resultAggregator.load();
+            }
+            return resultAggregator;
+        }
     }
 }
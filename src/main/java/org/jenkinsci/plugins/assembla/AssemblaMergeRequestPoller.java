@@ -0,0 +1,346 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.Extension;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.RootAction;
+import hudson.model.TaskListener;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.assembla.api.AssemblaClient;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.SpaceTool;
+import org.jenkinsci.plugins.assembla.api.models.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fallback for missed webhooks: periodically lists open merge requests of every repository with a polling
+ * trigger and builds the ones that changed since the last poll.
+ * <p>
+ * Each repository keeps an {@code updated_at} watermark and the ETag of the last listing, so a quiet repository
+ * costs a single conditional request. The first poll of a repository only records the watermark and reads every
+ * page; later polls stop at the first page with nothing updated since the watermark, assuming recently updated
+ * merge requests are listed first. Intervals
+ * shrink to {@link #MIN_INTERVAL} after a change and double up to {@link #MAX_INTERVAL} while nothing happens,
+ * with jitter so repositories do not poll in lockstep. Merge requests already built from a webhook are skipped.
+ */
+@Extension
+public class AssemblaMergeRequestPoller extends AsyncPeriodicWork {
+    private static final Logger LOGGER = Logger.getLogger(AssemblaMergeRequestPoller.class.getName());
+
+    static final long MIN_INTERVAL = TimeUnit.SECONDS.toMillis(Long.getLong(
+            AssemblaMergeRequestPoller.class.getName() + ".minIntervalSeconds",
+            60L
+    ));
+    static final long MAX_INTERVAL = TimeUnit.SECONDS.toMillis(Long.getLong(
+            AssemblaMergeRequestPoller.class.getName() + ".maxIntervalSeconds",
+            900L
+    ));
+    static final int MAX_PAGES = 10;
+    private static final int MAX_TRACKED_MERGE_REQUESTS = 10000;
+    private static final int MAX_TRACKED_USERS = 1000;
+
+    // Merge request id => source commit that was last built or seen
+    private static final Map<Integer, String> SEEN_COMMITS = Collections.synchronizedMap(
+            new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                    return size() > MAX_TRACKED_MERGE_REQUESTS;
+                }
+            }
+    );
+
+    // User id => login, reported as the author like webhooks do
+    private static final Map<String, String> USER_LOGINS = Collections.synchronizedMap(
+            new LinkedHashMap<String, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > MAX_TRACKED_USERS;
+                }
+            }
+    );
+
+    private final Map<String, RepoState> repos = new HashMap<>();
+    private final Random random = new Random();
+    private AssemblaWebhook webhook;
+
+    public AssemblaMergeRequestPoller() {
+        super("Assembla merge request poller");
+    }
+
+    AssemblaMergeRequestPoller(AssemblaWebhook webhook) {
+        this();
+        this.webhook = webhook;
+    }
+
+    /**
+     * Records the merge request commit as handled, so polling does not build it again.
+     */
+    public static void markSeen(MergeRequest mr) {
+        if (mr.getCommitId() != null) {
+            SEEN_COMMITS.put(mr.getId(), mr.getCommitId());
+        }
+    }
+
+    static boolean isSeen(MergeRequest mr) {
+        return mr.getCommitId() == null || mr.getCommitId().equals(SEEN_COMMITS.get(mr.getId()));
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return TimeUnit.SECONDS.toMillis(15);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) {
+        long now = System.currentTimeMillis();
+
+        for (RepoState state : updateRepos(now)) {
+            if (!state.isDue(now)) {
+                continue;
+            }
+
+            try {
+                state.scheduleAfter(poll(state), random);
+            } catch (AssemblaClient.AssemblaApiException ex) {
+                LOGGER.log(Level.WARNING, "Failed to poll merge requests of " + state.getKey(), ex);
+                state.schedule(MAX_INTERVAL, random);
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (RepoState state : repos.values()) {
+            result.put(state.getKey(), state.getStats());
+        }
+        return result;
+    }
+
+    /**
+     * Syncs the polled repositories with the polling triggers. New repositories get their first poll
+     * at a random point within {@link #MIN_INTERVAL}.
+     */
+    synchronized List<RepoState> updateRepos(long now) {
+        Map<String, RepoState> current = new HashMap<>();
+        for (AssemblaBuildTrigger trigger : AssemblaBuildTrigger.getDesc().getPollingTriggers()) {
+            RepoState state = new RepoState(trigger.getSpaceName(), trigger.getRepoName());
+            RepoState existing = repos.get(state.getKey());
+            if (existing == null) {
+                state.nextPollAt = now + (long) (random.nextDouble() * MIN_INTERVAL);
+                existing = state;
+            }
+            current.put(state.getKey(), existing);
+        }
+
+        repos.clear();
+        repos.putAll(current);
+        return new ArrayList<>(repos.values());
+    }
+
+    /**
+     * @return whether any merge request changed since the previous poll
+     */
+    boolean poll(RepoState state) {
+        AssemblaClient client = AssemblaBuildTrigger.getAssembla();
+        String etag;
+        Date previous;
+        boolean baselined;
+        synchronized (state) {
+            state.polls++;
+            etag = state.etag;
+            previous = state.watermark;
+            baselined = state.baselined;
+        }
+
+        AssemblaClient.ConditionalResponse<List<MergeRequest>> response =
+                client.getOpenMergeRequests(state.spaceName, state.repoName, 1, etag);
+        if (response.isNotModified()) {
+            synchronized (state) {
+                state.notModified++;
+            }
+            return false;
+        }
+
+        List<MergeRequest> mergeRequests = new ArrayList<>(response.getBody());
+        List<MergeRequest> page = response.getBody();
+        int pages = 1;
+        while (pages < MAX_PAGES && page.size() >= AssemblaClient.MERGE_REQUESTS_PER_PAGE
+                && (!baselined || hasUpdatesSince(page, previous))) {
+            pages++;
+            page = client.getOpenMergeRequests(state.spaceName, state.repoName, pages, null).getBody();
+            mergeRequests.addAll(page);
+        }
+
+        Date watermark = previous;
+        boolean changed = false;
+        List<MergeRequest> candidates = new ArrayList<>();
+        for (MergeRequest mr : mergeRequests) {
+            Date updatedAt = mr.getUpdatedAt();
+            if (updatedAt == null) {
+                continue;
+            }
+            if (watermark == null || updatedAt.after(watermark)) {
+                watermark = updatedAt;
+            }
+            // Equal timestamps are rechecked, the seen commits filter out what was handled already
+            if (previous == null || !updatedAt.before(previous)) {
+                candidates.add(mr);
+                changed |= previous == null || updatedAt.after(previous);
+            }
+        }
+
+        if (!baselined) {
+            LOGGER.fine("Baseline for " + state.getKey() + ": " + mergeRequests.size() + " open merge requests");
+            for (MergeRequest mr : mergeRequests) {
+                markSeen(mr);
+            }
+        }
+
+        synchronized (state) {
+            state.etag = response.getEtag();
+            state.watermark = watermark;
+            state.pages += pages;
+            state.baselined = true;
+        }
+        if (!baselined) {
+            return false;
+        }
+
+        for (MergeRequest mr : candidates) {
+            if (isSeen(mr)) {
+                continue;
+            }
+
+            SpaceTool sourceRepo = client.getTool(state.spaceName, mr.getSpaceToolId());
+            if (sourceRepo == null) {
+                LOGGER.info("Can not find source tool with ID: " + mr.getSpaceToolId());
+                continue;
+            }
+
+            boolean created = mr.getCreatedAt() != null && (previous == null || mr.getCreatedAt().after(previous));
+            String action = created ? "created" : "updated";
+            LOGGER.info("Polling found " + action + " merge request " + mr.getId() + " in " + state.getKey());
+            getWebhook().processMergeRequest(state.spaceName, sourceRepo, mr, mr.getCommitId(), getAuthor(client, mr), action);
+            synchronized (state) {
+                state.built++;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * @return whether any merge request of the page was updated at or after the watermark
+     */
+    private static boolean hasUpdatesSince(List<MergeRequest> page, Date watermark) {
+        if (watermark == null) {
+            return true;
+        }
+        for (MergeRequest mr : page) {
+            if (mr.getUpdatedAt() == null || !mr.getUpdatedAt().before(watermark)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return login of the merge request author, null if it can not be looked up
+     */
+    private String getAuthor(AssemblaClient client, MergeRequest mr) {
+        String userId = mr.getUserId();
+        if (userId == null) {
+            return null;
+        }
+
+        String login = USER_LOGINS.get(userId);
+        if (login != null) {
+            return login;
+        }
+
+        try {
+            User user = client.getUser(userId);
+            login = user == null ? null : user.getLogin();
+        } catch (AssemblaClient.AssemblaApiException ex) {
+            LOGGER.log(Level.FINE, "Can not find author of merge request " + mr.getId(), ex);
+        }
+        if (login != null) {
+            USER_LOGINS.put(userId, login);
+        }
+        return login;
+    }
+
+    private AssemblaWebhook getWebhook() {
+        if (webhook == null) {
+            webhook = Jenkins.getInstance().getExtensionList(RootAction.class).get(AssemblaWebhook.class);
+        }
+        return webhook;
+    }
+
+    /**
+     * Polling state of one repository. Fields change under the state's lock, so the statistics page reads
+     * consistent values while a poll runs.
+     */
+    static class RepoState {
+        final String spaceName;
+        final String repoName;
+        boolean baselined;
+        Date watermark;
+        String etag;
+        long interval = MIN_INTERVAL;
+        long nextPollAt;
+        long polls;
+        long notModified;
+        long pages;
+        long built;
+
+        RepoState(String spaceName, String repoName) {
+            this.spaceName = spaceName;
+            this.repoName = repoName;
+        }
+
+        String getKey() {
+            return (spaceName + ":" + repoName).toLowerCase(Locale.ENGLISH);
+        }
+
+        synchronized boolean isDue(long now) {
+            return nextPollAt <= now;
+        }
+
+        /**
+         * Polls again soon after a change, backs off while nothing changes.
+         */
+        synchronized void scheduleAfter(boolean changed, Random random) {
+            schedule(changed ? MIN_INTERVAL : Math.min(interval * 2, MAX_INTERVAL), random);
+        }
+
+        synchronized void schedule(long interval, Random random) {
+            this.interval = interval;
+            // +/- 20% so repositories that started together drift apart
+            this.nextPollAt = System.currentTimeMillis() + (long) (interval * (0.8 + random.nextDouble() * 0.4));
+        }
+
+        synchronized Map<String, Object> getStats() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("intervalSeconds", TimeUnit.MILLISECONDS.toSeconds(interval));
+            values.put("nextPollAt", nextPollAt);
+            values.put("watermark", watermark == null ? null : watermark.getTime());
+            values.put("polls", polls);
+            values.put("notModified", notModified);
+            values.put("pages", pages);
+            values.put("built", built);
+            return values;
+        }
+    }
+}
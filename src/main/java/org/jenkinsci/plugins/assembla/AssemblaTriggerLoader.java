@@ -0,0 +1,42 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.Extension;
+import hudson.model.AbstractProject;
+import hudson.model.Item;
+import hudson.model.listeners.ItemListener;
+import jenkins.model.Jenkins;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Registers the triggers of all jobs in one pass once Jenkins has loaded them. Triggers started while jobs are
+ * loading skip registering themselves, so startup does not publish a routing table per job.
+ * <p>
+ * Also drops the default parameters cached by a trigger when its job is updated.
+ */
+@Extension
+public class AssemblaTriggerLoader extends ItemListener {
+    private static final Logger LOGGER = Logger.getLogger(AssemblaTriggerLoader.class.getName());
+
+    @Override
+    public void onLoaded() {
+        long start = System.nanoTime();
+        List<AbstractProject> projects = Jenkins.getInstance().getAllItems(AbstractProject.class);
+        int registered = AssemblaBuildTrigger.getDesc().registerAll(projects);
+
+        LOGGER.info("Registered " + registered + " Assembla triggers of " + projects.size() + " jobs in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    @Override
+    public void onUpdated(Item item) {
+        if (item instanceof AbstractProject) {
+            AssemblaBuildTrigger trigger = AssemblaBuildTrigger.getTrigger((AbstractProject<?, ?>) item);
+            if (trigger != null) {
+                trigger.invalidateDefaultParameters();
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package org.jenkinsci.plugins.assembla;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import hudson.Extension;
 import hudson.model.AbstractProject;
+import hudson.model.PeriodicWork;
 import hudson.model.UnprotectedRootAction;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
 import org.apache.commons.io.IOUtils;
 import org.jenkinsci.plugins.assembla.api.AssemblaClient;
 import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
@@ -13,11 +16,22 @@ import org.jenkinsci.plugins.assembla.cause.AssemblaMergeRequestCause;
 import org.jenkinsci.plugins.assembla.cause.AssemblaPushCause;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
+import org.kohsuke.stapler.interceptor.RequirePOST;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +43,70 @@ import java.util.logging.Logger;
 public class AssemblaWebhook implements UnprotectedRootAction {
     static final String URL =  "assembla-webhook";
     private static final Logger LOGGER = Logger.getLogger(AssemblaWebhook.class.getName());
+    static final int MAX_PAYLOAD_SIZE = Integer.getInteger(
+            AssemblaWebhook.class.getName() + ".maxPayloadSize",
+            WebhookPayloadReader.DEFAULT_MAX_PAYLOAD_SIZE
+    );
+
+    static final long MAX_BATCH_SIZE = Long.getLong(
+            AssemblaWebhook.class.getName() + ".maxBatchSize",
+            32L * 1024 * 1024
+    );
+    static final int MAX_BATCH_EVENTS = Integer.getInteger(
+            AssemblaWebhook.class.getName() + ".maxBatchEvents",
+            10000
+    );
+
+    static final int WORKER_THREADS = Integer.getInteger(
+            AssemblaWebhook.class.getName() + ".workerThreads",
+            4
+    );
+
+    static final int MAX_CONCURRENT_REQUESTS = Integer.getInteger(
+            AssemblaWebhook.class.getName() + ".maxConcurrentRequests",
+            16
+    );
+    static final int MAX_QUEUE_DEPTH = Integer.getInteger(
+            AssemblaWebhook.class.getName() + ".maxQueueDepth",
+            1000
+    );
+    static final int RETRY_AFTER_SECONDS = Integer.getInteger(
+            AssemblaWebhook.class.getName() + ".retryAfterSeconds",
+            30
+    );
+    // Batches wait for room in the queue instead of failing, which slows the sender down
+    static final long BATCH_ADMISSION_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    static final int SC_TOO_MANY_REQUESTS = 429;
+
+    static final long SLOW_EVENT_MILLIS = Long.getLong(
+            AssemblaWebhook.class.getName() + ".slowEventMillis",
+            5000L
+    );
+    static final int MAX_SLOW_EVENTS = Integer.getInteger(
+            AssemblaWebhook.class.getName() + ".maxSlowEvents",
+            50
+    );
+
+    static final int FAN_OUT_THREADS = Integer.getInteger(
+            AssemblaWebhook.class.getName() + ".fanOutThreads",
+            4
+    );
+    // Below this many jobs, preparing builds in parallel costs more than it saves
+    static final int PARALLEL_FAN_OUT_THRESHOLD = 4;
+
+    static final long UNROUTED_CACHE_SECONDS = Long.getLong(
+            AssemblaWebhook.class.getName() + ".unroutedCacheSeconds",
+            600L
+    );
+
+    private final WebhookPayloadReader payloadReader = new WebhookPayloadReader(MAX_PAYLOAD_SIZE);
+    // Merge request events cost twice as much as changesets: they need extra API requests
+    private final WebhookDispatcher dispatcher = new WebhookDispatcher(WORKER_THREADS, 2, MAX_QUEUE_DEPTH);
+    private final Semaphore requestPermits = new Semaphore(MAX_CONCURRENT_REQUESTS);
+    private final WebhookLatencyStats latencyStats = new WebhookLatencyStats(SLOW_EVENT_MILLIS, MAX_SLOW_EVENTS);
+    private final BuildFanOut fanOut = new BuildFanOut(FAN_OUT_THREADS, PARALLEL_FAN_OUT_THRESHOLD);
+    private final WebhookRouteFilter routeFilter = new WebhookRouteFilter(TimeUnit.SECONDS.toMillis(UNROUTED_CACHE_SECONDS));
 
     @Override
     public String getIconFileName() {
@@ -46,67 +124,303 @@ public class AssemblaWebhook implements UnprotectedRootAction {
     }
 
 
-    public void doIndex(StaplerRequest req, StaplerResponse resp) {
-        String body = extractRequestBody(req);
-        LOGGER.info("Webhook payload: " + body);
-        Gson gson = new GsonBuilder().create();
-        WebhookPayload payload = gson.fromJson(body, WebhookPayload.class);
+    public void doIndex(StaplerRequest req, StaplerResponse resp) throws IOException {
+        if (!requestPermits.tryAcquire()) {
+            sendRetryLater(resp, SC_TOO_MANY_REQUESTS, "Too many concurrent webhook requests");
+            return;
+        }
+
+        try {
+            WebhookTrace trace = new WebhookTrace();
+            WebhookPayload payload;
+            try {
+                payload = readPayload(req, trace);
+            } catch (WebhookPayloadReader.PayloadTooLargeException ex) {
+                LOGGER.warning("Rejected webhook: " + ex.getMessage());
+                resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, ex.getMessage());
+                return;
+            } catch (WebhookPayloadReader.InvalidPayloadException ex) {
+                LOGGER.warning("Rejected webhook: " + ex.getMessage());
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+                return;
+            } catch (IOException ex) {
+                // Most likely a dropped connection; ask Assembla to deliver the event again
+                LOGGER.log(Level.WARNING, "Failed to read webhook payload", ex);
+                resp.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Failed to read webhook payload");
+                return;
+            }
 
-        if (payload != null && payload.shouldTriggerBuild()) {
             try {
-                if (payload.isMergeRequestEvent()) {
-                    processMergeRequestEvent(payload);
-                } else if (payload.isChangesetEvent()) {
-                    processChangesetEvent(payload);
+                dispatch(payload, 0, trace);
+            } catch (RejectedExecutionException ex) {
+                sendRetryLater(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, ex.getMessage());
+            }
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    /**
+     * Accepts a JSON array of webhook events or a newline-delimited stream of them. Events are decoded
+     * on the request thread and queued as they arrive, so decoding and processing overlap.
+     * Responds with a per-event status summary once every event is processed.
+     */
+    @RequirePOST
+    public void doBatch(StaplerRequest req, StaplerResponse resp) throws IOException {
+        if (req.getContentLength() > MAX_BATCH_SIZE) {
+            resp.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, "Webhook batch exceeds " + MAX_BATCH_SIZE + " characters");
+            return;
+        }
+
+        if (!requestPermits.tryAcquire()) {
+            sendRetryLater(resp, SC_TOO_MANY_REQUESTS, "Too many concurrent webhook requests");
+            return;
+        }
+
+        try {
+            processBatch(req, resp);
+        } finally {
+            requestPermits.release();
+        }
+    }
+
+    private void processBatch(StaplerRequest req, StaplerResponse resp) throws IOException {
+        List<Future<WebhookEventStatus>> results = new ArrayList<>();
+        String error = null;
+        int errorStatus = HttpServletResponse.SC_OK;
+
+        BufferedReader br = null;
+        try {
+            br = req.getReader();
+            WebhookPayloadReader.Batch batch = payloadReader.openBatch(br, MAX_BATCH_SIZE);
+
+            while (batch.hasNext()) {
+                if (results.size() >= MAX_BATCH_EVENTS) {
+                    error = "Webhook batch exceeds " + MAX_BATCH_EVENTS + " events";
+                    errorStatus = HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+                    break;
+                }
+                WebhookPayload payload = batch.next();
+                try {
+                    results.add(dispatch(payload, BATCH_ADMISSION_TIMEOUT));
+                } catch (RejectedExecutionException ex) {
+                    results.add(WebhookDispatcher.completed(WebhookEventStatus.REJECTED));
                 }
-            } catch (AssemblaClient.AssemblaApiException ex) {
-                LOGGER.log(Level.SEVERE, "Assembla API request failed", ex);
             }
+        } catch (WebhookPayloadReader.PayloadTooLargeException ex) {
+            error = ex.getMessage();
+            errorStatus = HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE;
+        } catch (WebhookPayloadReader.InvalidPayloadException ex) {
+            error = ex.getMessage();
+            errorStatus = HttpServletResponse.SC_BAD_REQUEST;
+        } finally {
+            IOUtils.closeQuietly(br);
+        }
+
+        if (error != null) {
+            LOGGER.warning("Webhook batch stopped after " + results.size() + " events: " + error);
+        }
+
+        resp.setStatus(errorStatus);
+        resp.setContentType("application/json;charset=UTF-8");
+        writeBatchSummary(resp, results, error);
+    }
+
+    /**
+     * Webhook processing statistics, available to administrators only.
+     */
+    public void doStats(StaplerRequest req, StaplerResponse resp) throws IOException {
+        Jenkins.getInstance().checkPermission(Jenkins.ADMINISTER);
+
+        Map<String, Object> requests = new LinkedHashMap<>();
+        requests.put("inFlight", MAX_CONCURRENT_REQUESTS - requestPermits.availablePermits());
+        requests.put("maxInFlight", MAX_CONCURRENT_REQUESTS);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests);
+        stats.put("dispatcher", dispatcher.getStats());
+        stats.put("latency", latencyStats.getStats());
+        stats.put("routing", routeFilter.getStats());
+        stats.put("fanOut", fanOut.getStats());
+        stats.put("startup", AssemblaBuildTrigger.getDesc().getRegistrationStats());
 
+        AssemblaBuildListener buildListener = Jenkins.getInstance().getExtensionList(RunListener.class).get(AssemblaBuildListener.class);
+        if (buildListener != null) {
+            stats.put("reporting", buildListener.getOutbox().getStats());
+        }
+        stats.put("notifications", NotificationOutbox.get().getStats());
+        stats.put("tickets", MergeRequestTickets.getStats());
+
+        AssemblaMergeRequestPoller poller = Jenkins.getInstance().getExtensionList(PeriodicWork.class).get(AssemblaMergeRequestPoller.class);
+        if (poller != null) {
+            stats.put("polling", poller.getStats());
+        }
+
+        resp.setContentType("application/json;charset=UTF-8");
+        resp.getWriter().print(JSONObject.fromObject(stats).toString(2));
+    }
+
+    WebhookDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    WebhookLatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    public Future<WebhookEventStatus> dispatch(WebhookPayload payload) {
+        return dispatch(payload, 0);
+    }
+
+    /**
+     * Queues the payload for processing. Changesets are shed before merge request events once the queue
+     * fills up: a missed changeset build is picked up by the next push, a missed merge request build is not.
+     *
+     * @throws RejectedExecutionException if the queue has no room for the event within {@code admissionTimeoutMillis}
+     */
+    public Future<WebhookEventStatus> dispatch(WebhookPayload payload, long admissionTimeoutMillis) {
+        return dispatch(payload, admissionTimeoutMillis, new WebhookTrace());
+    }
+
+    private Future<WebhookEventStatus> dispatch(WebhookPayload payload, long admissionTimeoutMillis, WebhookTrace trace) {
+        if (payload == null) {
+            return WebhookDispatcher.completed(WebhookEventStatus.INVALID);
+        }
+        if (!payload.shouldTriggerBuild()) {
+            LOGGER.fine("Ignoring webhook payload: " + payload);
+            return WebhookDispatcher.completed(WebhookEventStatus.IGNORED);
         }
 
+        boolean mergeRequest = payload.isMergeRequestEvent();
+        trace.queued(payload);
+        return dispatcher.submit(
+                payload.getSpaceWikiName(),
+                mergeRequest ? 2 : 1,
+                mergeRequest ? WebhookDispatcher.Priority.HIGH : WebhookDispatcher.Priority.LOW,
+                admissionTimeoutMillis,
+                new WebhookEvent(payload, trace)
+        );
+    }
+
+    public WebhookEventStatus processPayload(WebhookPayload payload) {
+        if (payload == null) {
+            return WebhookEventStatus.INVALID;
+        }
+
+        LOGGER.fine("Webhook payload: " + payload);
+
+        if (!payload.shouldTriggerBuild()) {
+            return WebhookEventStatus.IGNORED;
+        }
+
+        try {
+            if (payload.isMergeRequestEvent()) {
+                processMergeRequestEvent(payload);
+            } else if (payload.isChangesetEvent()) {
+                processChangesetEvent(payload);
+            }
+        } catch (AssemblaClient.AssemblaApiException ex) {
+            LOGGER.log(Level.SEVERE, "Assembla API request failed", ex);
+            return WebhookEventStatus.FAILED;
+        }
+
+        return WebhookEventStatus.PROCESSED;
     }
 
     public void processChangesetEvent(WebhookPayload payload) {
+        TriggerRoutingTable routing = AssemblaBuildTrigger.getDesc().getRoutingTable();
+        if (!routeFilter.isRouted(payload, routing)) {
+            LOGGER.fine("No jobs for changeset in " + payload.getRepositoryUrl());
+            return;
+        }
+
         SpaceTool sourceRepo = getSpaceTool(payload);
         if (sourceRepo == null) {
+            routeFilter.markUnrouted(payload, routing);
+            return;
+        }
+
+        List<AssemblaBuildTrigger> triggers = findTriggers(payload.getSpaceWikiName(), sourceRepo.getName());
+        if (triggers.isEmpty()) {
+            routeFilter.markUnrouted(payload, routing);
             return;
         }
 
         LOGGER.info("Processing changeset event");
-        AssemblaPushCause cause = AssemblaPushCause.fromChangeset(sourceRepo, payload);
+        final AssemblaPushCause cause = AssemblaPushCause.fromChangeset(sourceRepo, payload);
+        final ChangedPaths changedPaths = ChangedPaths.forCommit(payload.getSpaceWikiName(), sourceRepo.getId(), payload.getCommitId());
 
-        for (AssemblaBuildTrigger trigger : getTriggers(payload.getSpaceWikiName(), sourceRepo.getName())) {
-            trigger.handlePush(cause);
-        }
+        long start = System.nanoTime();
+        fanOut.schedule(triggers, new BuildFanOut.Preparer() {
+            @Override
+            public AssemblaBuildTrigger.BuildRequest prepare(AssemblaBuildTrigger trigger) {
+                return trigger.preparePush(cause, changedPaths);
+            }
+        });
+        WebhookTrace.record(WebhookTrace.Span.SCHEDULE, start);
     }
 
     public void processMergeRequestEvent(WebhookPayload payload) {
+        TriggerRoutingTable routing = AssemblaBuildTrigger.getDesc().getRoutingTable();
+        if (!routeFilter.isRouted(payload, routing)) {
+            LOGGER.fine("No jobs for merge request in " + payload.getRepositoryUrl());
+            return;
+        }
+
         SpaceTool sourceRepo = getSpaceTool(payload);
         if (sourceRepo == null) {
             LOGGER.info("Can not find source tool with url: " + payload.getRepositoryUrl());
+            routeFilter.markUnrouted(payload, routing);
             return;
         }
 
+        long start = System.nanoTime();
         MergeRequest mr = AssemblaBuildTrigger.getAssembla()
                 .getMergeRequest(
                         payload.getSpaceWikiName(),
                         sourceRepo.getName(),
                         payload.getMergeRequestId()
                 );
+        WebhookTrace.record(WebhookTrace.Span.FETCH_MERGE_REQUEST, start);
 
         if (mr == null) {
             LOGGER.info("Can not find MR with ID: " + payload.getMergeRequestId() + ", tool: " + sourceRepo.getName());
             return;
         }
+        // A new version or an edit may have changed the linked tickets
+        MergeRequestTickets.invalidate(mr);
 
+        processMergeRequest(payload.getSpaceWikiName(), sourceRepo, mr, payload.getCommitId(), payload.getAuthor(),
+                payload.getAction(), ChangedPaths.forMergeRequest(mr, payload.getMergeRequestVersion()));
+    }
+
+    /**
+     * Triggers builds for a merge request, shared by webhook events and {@link AssemblaMergeRequestPoller}.
+     */
+    public void processMergeRequest(String spaceName, SpaceTool sourceRepo, MergeRequest mr,
+                                    String commitId, String author, String action) {
+        processMergeRequest(spaceName, sourceRepo, mr, commitId, author, action, ChangedPaths.forMergeRequest(mr, null));
+    }
+
+    private void processMergeRequest(String spaceName, SpaceTool sourceRepo, MergeRequest mr,
+                                     String commitId, String author, String action, final ChangedPaths changedPaths) {
         SpaceTool targetRepo;
 
         // Merge request is not from forked repo
         if (mr.getSpaceToolId().equals(mr.getTargetSpaceToolId())) {
             targetRepo = sourceRepo;
         } else {
-            targetRepo = AssemblaBuildTrigger.getAssembla().getTool(payload.getSpaceWikiName(), mr.getTargetSpaceToolId());
+            long start = System.nanoTime();
+            TriggerRoutingTable.Route route = AssemblaBuildTrigger.getDesc()
+                    .getRoutingTable()
+                    .getRouteByToolId(mr.getTargetSpaceToolId());
+            if (route != null) {
+                targetRepo = route.getTool();
+            } else {
+                targetRepo = AssemblaBuildTrigger.getAssembla().getTool(spaceName, mr.getTargetSpaceToolId());
+            }
+            WebhookTrace.record(WebhookTrace.Span.FETCH_TARGET_REPO, start);
         }
 
         if (targetRepo == null) {
@@ -114,25 +428,101 @@ public class AssemblaWebhook implements UnprotectedRootAction {
             return;
         }
 
-        AssemblaMergeRequestCause cause = AssemblaMergeRequestCause.fromMergeRequest(mr, sourceRepo, targetRepo, payload);
+        final AssemblaMergeRequestCause cause = AssemblaMergeRequestCause.fromMergeRequest(mr, sourceRepo, targetRepo, commitId, author, action);
+        List<AssemblaBuildTrigger> triggers = findTriggers(spaceName, targetRepo.getName());
 
-        for (AssemblaBuildTrigger trigger : getTriggers(payload.getSpaceWikiName(), targetRepo.getName())) {
-            trigger.handleMergeRequest(cause);
-        }
+        long start = System.nanoTime();
+        fanOut.schedule(triggers, new BuildFanOut.Preparer() {
+            @Override
+            public AssemblaBuildTrigger.BuildRequest prepare(AssemblaBuildTrigger trigger) {
+                return trigger.prepareMergeRequest(cause, changedPaths);
+            }
+        });
+        WebhookTrace.record(WebhookTrace.Span.SCHEDULE, start);
+
+        AssemblaMergeRequestPoller.markSeen(mr);
     }
 
-    private String extractRequestBody(StaplerRequest req) {
-        String body = null;
+    private WebhookPayload readPayload(StaplerRequest req, WebhookTrace trace) throws IOException {
+        if (req.getContentLength() > payloadReader.getMaxPayloadSize()) {
+            throw new WebhookPayloadReader.PayloadTooLargeException(payloadReader.getMaxPayloadSize());
+        }
+
+        long start = System.nanoTime();
         BufferedReader br = null;
         try {
             br = req.getReader();
-            body = IOUtils.toString(br);
-        } catch (IOException e) {
-            body = null;
+            return payloadReader.read(trace.timeReads(br));
         } finally {
             IOUtils.closeQuietly(br);
+            trace.add(WebhookTrace.Span.PARSE, System.nanoTime() - start - trace.getSpanNanos(WebhookTrace.Span.READ));
+        }
+    }
+
+    private void sendRetryLater(StaplerResponse resp, int status, String message) throws IOException {
+        LOGGER.warning("Shedding webhook load: " + message);
+        resp.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+        resp.sendError(status, message);
+    }
+
+    private void writeBatchSummary(StaplerResponse resp, List<Future<WebhookEventStatus>> results, String error) throws IOException {
+        Map<WebhookEventStatus, Integer> totals = new EnumMap<>(WebhookEventStatus.class);
+        for (WebhookEventStatus status : WebhookEventStatus.values()) {
+            totals.put(status, 0);
+        }
+
+        JsonWriter json = new JsonWriter(resp.getWriter());
+        json.beginObject();
+        json.name("events").beginArray();
+        for (int i = 0; i < results.size(); i++) {
+            WebhookEventStatus status = getBatchEventStatus(results.get(i));
+            totals.put(status, totals.get(status) + 1);
+            json.beginObject().name("index").value(i).name("status").value(status.getLabel()).endObject();
+        }
+        json.endArray();
+
+        json.name("received").value(results.size());
+        for (Map.Entry<WebhookEventStatus, Integer> total : totals.entrySet()) {
+            json.name(total.getKey().getLabel()).value(total.getValue());
+        }
+        if (error != null) {
+            json.name("error").value(error);
+        }
+        json.endObject();
+        json.flush();
+    }
+
+    private WebhookEventStatus getBatchEventStatus(Future<WebhookEventStatus> result) {
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            LOGGER.log(Level.SEVERE, "Failed to process batched webhook event", ex.getCause());
+            return WebhookEventStatus.FAILED;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return WebhookEventStatus.FAILED;
+        }
+    }
+
+    private class WebhookEvent implements Callable<WebhookEventStatus> {
+        private final WebhookPayload payload;
+        private final WebhookTrace trace;
+
+        WebhookEvent(WebhookPayload payload, WebhookTrace trace) {
+            this.payload = payload;
+            this.trace = trace;
+        }
+
+        @Override
+        public WebhookEventStatus call() {
+            trace.attach();
+            try {
+                return processPayload(payload);
+            } finally {
+                trace.finish();
+                latencyStats.record(trace);
+            }
         }
-        return body;
     }
 
     public List<AssemblaBuildTrigger> getTriggers(String spaceName, String repoName) {
@@ -148,9 +538,29 @@ public class AssemblaWebhook implements UnprotectedRootAction {
         return triggers;
     }
 
+    private List<AssemblaBuildTrigger> findTriggers(String spaceName, String repoName) {
+        long start = System.nanoTime();
+        List<AssemblaBuildTrigger> triggers = getTriggers(spaceName, repoName);
+        WebhookTrace.record(WebhookTrace.Span.FIND_TRIGGERS, start);
+        return triggers;
+    }
+
     private SpaceTool getSpaceTool(WebhookPayload payload) {
-        return AssemblaBuildTrigger
-                .getAssembla()
-                .getRepoByUrl(payload.getSpaceWikiName(), payload.getRepositoryUrl());
+        long start = System.nanoTime();
+        SpaceTool tool;
+        TriggerRoutingTable.Route route = AssemblaBuildTrigger.getDesc()
+                .getRoutingTable()
+                .getRouteByUrl(payload.getNormalizedRepositoryUrl());
+
+        if (route != null) {
+            tool = route.getTool();
+        } else {
+            // Not resolved by any trigger yet, list the space repos
+            tool = AssemblaBuildTrigger
+                    .getAssembla()
+                    .getRepoByUrl(payload.getSpaceWikiName(), payload.getRepositoryUrl());
+        }
+        WebhookTrace.record(WebhookTrace.Span.RESOLVE_REPO, start);
+        return tool;
     }
 }
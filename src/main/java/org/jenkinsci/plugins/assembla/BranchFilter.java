@@ -0,0 +1,177 @@
+package org.jenkinsci.plugins.assembla;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Branch filter of a push trigger, compiled once from the comma separated {@code branchesToBuild} setting.
+ * <p>
+ * Entries are exact branch names, globs such as {@code release/*} (see {@link Glob}) or regular expressions
+ * prefixed with a colon, such as {@code :release-\d+}. Entries starting with {@code !} exclude branches.
+ * A filter without include entries matches every branch that is not excluded.
+ * <p>
+ * Exact names are looked up in a hash set and globs sit in a trie on their literal prefix, so a branch is only
+ * compared with the globs whose prefix it starts with. Matching allocates only for regular expressions.
+ */
+public final class BranchFilter {
+    public static final BranchFilter ALL = compile("");
+
+    private final String spec;
+    private final PatternSet includes = new PatternSet();
+    private final PatternSet excludes = new PatternSet();
+
+    private BranchFilter(String spec) {
+        this.spec = spec;
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException if a regular expression entry is invalid
+     */
+    public static BranchFilter compile(String spec) {
+        BranchFilter filter = new BranchFilter(spec == null ? "" : spec);
+
+        for (String entry : filter.spec.split(",")) {
+            entry = entry.trim();
+            if (entry.startsWith("!")) {
+                filter.excludes.add(entry.substring(1).trim());
+            } else {
+                filter.includes.add(entry);
+            }
+        }
+
+        return filter;
+    }
+
+    public boolean matches(String branch) {
+        if (branch == null) {
+            return false;
+        }
+        if (excludes.matches(branch)) {
+            return false;
+        }
+        return includes.isEmpty() || includes.matches(branch);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    private static final class PatternSet {
+        private final Set<String> exact = new HashSet<>();
+        private final PrefixTrie globs = new PrefixTrie();
+        private final List<Pattern> regexes = new ArrayList<>();
+
+        void add(String entry) {
+            if (entry.isEmpty()) {
+                return;
+            }
+
+            if (entry.startsWith(":")) {
+                regexes.add(Pattern.compile(entry.substring(1)));
+            } else if (Glob.isGlob(entry)) {
+                globs.add(new Glob(entry));
+            } else {
+                exact.add(entry);
+            }
+        }
+
+        boolean isEmpty() {
+            return exact.isEmpty() && globs.isEmpty() && regexes.isEmpty();
+        }
+
+        boolean matches(String branch) {
+            if (exact.contains(branch) || globs.matches(branch)) {
+                return true;
+            }
+            for (int i = 0; i < regexes.size(); i++) {
+                if (regexes.get(i).matcher(branch).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Globs keyed by the literal text before their first wildcard. Children are kept sorted by character.
+     */
+    static final class PrefixTrie {
+        private static final Glob[] NO_GLOBS = new Glob[0];
+
+        private char[] keys = new char[0];
+        private PrefixTrie[] children = new PrefixTrie[0];
+        private Glob[] globs = NO_GLOBS;
+
+        void add(Glob glob) {
+            String pattern = glob.getPattern();
+            int prefixLength = Glob.literalPrefixLength(pattern);
+
+            PrefixTrie node = this;
+            for (int i = 0; i < prefixLength; i++) {
+                node = node.getOrAddChild(pattern.charAt(i));
+            }
+
+            node.globs = Arrays.copyOf(node.globs, node.globs.length + 1);
+            node.globs[node.globs.length - 1] = glob;
+        }
+
+        boolean isEmpty() {
+            return keys.length == 0 && globs.length == 0;
+        }
+
+        boolean matches(String text) {
+            PrefixTrie node = this;
+            for (int depth = 0; ; depth++) {
+                Glob[] candidates = node.globs;
+                for (int i = 0; i < candidates.length; i++) {
+                    // The literal prefix already matched on the way down
+                    if (candidates[i].matches(depth, text, depth)) {
+                        return true;
+                    }
+                }
+
+                if (depth == text.length()) {
+                    return false;
+                }
+                node = node.getChild(text.charAt(depth));
+                if (node == null) {
+                    return false;
+                }
+            }
+        }
+
+        private PrefixTrie getChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+
+        private PrefixTrie getOrAddChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insertAt = -index - 1;
+            PrefixTrie child = new PrefixTrie();
+
+            char[] newKeys = new char[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            newKeys[insertAt] = c;
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+
+            PrefixTrie[] newChildren = new PrefixTrie[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            newChildren[insertAt] = child;
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Schedules the builds of one webhook event across all matching jobs. Build parameters, path filters and the like
+ * are prepared in parallel, then the builds are submitted to the queue one after another. Small fan-outs are
+ * prepared on the calling thread.
+ */
+public class BuildFanOut {
+    private static final Logger LOGGER = Logger.getLogger(BuildFanOut.class.getName());
+
+    private final int parallelThreshold;
+    private final ExecutorService executor;
+
+    private long events;
+    private long jobs;
+    private long builds;
+    private int maxJobs;
+    private final WebhookLatencyStats.Samples prepareNanos = new WebhookLatencyStats.Samples();
+    private final WebhookLatencyStats.Samples scheduleNanos = new WebhookLatencyStats.Samples();
+
+    /**
+     * @param threads           threads preparing builds, shared by all events
+     * @param parallelThreshold fan-outs with fewer jobs are prepared on the calling thread
+     */
+    public BuildFanOut(int threads, int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+        this.executor = Executors.newFixedThreadPool(
+                Math.max(1, threads),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Assembla build fan-out")
+        );
+    }
+
+    /**
+     * @return number of builds scheduled
+     */
+    public int schedule(List<AssemblaBuildTrigger> triggers, final Preparer preparer) {
+        if (triggers.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        List<AssemblaBuildTrigger.BuildRequest> requests = new ArrayList<>();
+
+        if (triggers.size() < parallelThreshold) {
+            for (AssemblaBuildTrigger trigger : triggers) {
+                try {
+                    addRequest(requests, preparer.prepare(trigger));
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to prepare build for " + trigger.getSpaceName() + ":" + trigger.getRepoName(), ex);
+                }
+            }
+        } else {
+            List<Future<AssemblaBuildTrigger.BuildRequest>> futures = new ArrayList<>();
+            for (final AssemblaBuildTrigger trigger : triggers) {
+                futures.add(executor.submit(new Callable<AssemblaBuildTrigger.BuildRequest>() {
+                    @Override
+                    public AssemblaBuildTrigger.BuildRequest call() {
+                        return preparer.prepare(trigger);
+                    }
+                }));
+            }
+            for (Future<AssemblaBuildTrigger.BuildRequest> future : futures) {
+                try {
+                    addRequest(requests, future.get());
+                } catch (ExecutionException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to prepare build", ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        long prepared = System.nanoTime();
+        int scheduled = 0;
+        for (AssemblaBuildTrigger.BuildRequest request : requests) {
+            if (request.schedule() != null) {
+                scheduled++;
+            }
+        }
+        long done = System.nanoTime();
+
+        synchronized (this) {
+            events++;
+            jobs += triggers.size();
+            builds += scheduled;
+            maxJobs = Math.max(maxJobs, triggers.size());
+            prepareNanos.add(prepared - start);
+            scheduleNanos.add(done - prepared);
+        }
+        return scheduled;
+    }
+
+    private static void addRequest(List<AssemblaBuildTrigger.BuildRequest> requests, AssemblaBuildTrigger.BuildRequest request) {
+        if (request != null) {
+            requests.add(request);
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("events", events);
+        result.put("jobs", jobs);
+        result.put("builds", builds);
+        result.put("averageJobs", events == 0 ? 0 : Math.round(jobs * 10.0 / events) / 10.0);
+        result.put("maxJobs", maxJobs);
+        result.put("prepare", prepareNanos.toMap());
+        result.put("schedule", scheduleNanos.toMap());
+        return result;
+    }
+
+    /**
+     * Prepares the build of one trigger, returns null if the trigger does not build the event.
+     */
+    public interface Preparer {
+        AssemblaBuildTrigger.BuildRequest prepare(AssemblaBuildTrigger trigger);
+    }
+}
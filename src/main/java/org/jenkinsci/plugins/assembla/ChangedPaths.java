@@ -0,0 +1,143 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.jenkinsci.plugins.assembla.api.models.ChangedFile;
+import org.jenkinsci.plugins.assembla.api.models.Commit;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequestVersion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Files changed by the commit or merge request version behind a webhook event. They are fetched on first use, so
+ * events whose triggers have no path filters cost no request, and shared through an LRU cache with other events
+ * and triggers for the same revision. A failed or empty lookup yields null: path filters then let the build through.
+ * <p>
+ * The Assembla endpoints listing changed files have not been checked against the real API yet, so the lookup is
+ * off unless {@code -Dorg.jenkinsci.plugins.assembla.ChangedPaths.lookup=true} is set, and the trigger's path
+ * patterns are not offered in the job configuration. Without the lookup every change counts as relevant.
+ */
+public class ChangedPaths {
+    private static final Logger LOGGER = Logger.getLogger(ChangedPaths.class.getName());
+    static final int CACHE_SIZE = 1000;
+    static final boolean LOOKUP = Boolean.getBoolean(ChangedPaths.class.getName() + ".lookup");
+
+    private static final Loader UNKNOWN = new Loader() {
+        @Override
+        public List<ChangedFile> load() {
+            return null;
+        }
+    };
+
+    private static final Map<String, List<String>> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            }
+    );
+
+    private final String key;
+    private final Loader loader;
+    private boolean loaded;
+    private List<String> paths;
+
+    ChangedPaths(String key, Loader loader) {
+        this.key = key;
+        this.loader = loader;
+    }
+
+    public static ChangedPaths forCommit(final String spaceName, final String toolId, final String commitId) {
+        String key = spaceName + ":" + toolId + ":" + commitId;
+        if (!LOOKUP) {
+            return new ChangedPaths(key, UNKNOWN);
+        }
+
+        return new ChangedPaths(key, new Loader() {
+            @Override
+            public List<ChangedFile> load() {
+                Commit commit = AssemblaBuildTrigger.getAssembla().getCommit(spaceName, toolId, commitId);
+                return commit == null ? null : commit.getChangedFiles();
+            }
+        });
+    }
+
+    /**
+     * @param version merge request version, the latest one if null
+     */
+    public static ChangedPaths forMergeRequest(final MergeRequest mr, final Integer version) {
+        String key = mr.getTargetSpaceId() + ":" + mr.getSpaceToolId() + ":mr-" + mr.getId() + ":"
+                + (version == null ? mr.getCommitId() : "v" + version);
+        if (!LOOKUP) {
+            return new ChangedPaths(key, UNKNOWN);
+        }
+
+        return new ChangedPaths(key, new Loader() {
+            @Override
+            public List<ChangedFile> load() {
+                Integer resolved = version;
+                if (resolved == null) {
+                    for (MergeRequestVersion candidate : AssemblaBuildTrigger.getAssembla().getMergeRequestVersions(mr)) {
+                        if (resolved == null || candidate.getVersion() > resolved) {
+                            resolved = candidate.getVersion();
+                        }
+                    }
+                }
+                if (resolved == null) {
+                    return null;
+                }
+                return AssemblaBuildTrigger.getAssembla().getMergeRequestVersionChangedFiles(mr, resolved);
+            }
+        });
+    }
+
+    /**
+     * @return changed file paths, or null if they are not known
+     */
+    public synchronized List<String> get() {
+        if (loaded) {
+            return paths;
+        }
+        loaded = true;
+
+        paths = CACHE.get(key);
+        if (paths != null) {
+            return paths;
+        }
+
+        List<ChangedFile> files;
+        try {
+            files = loader.load();
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to fetch changed files of " + key + ", path filters are skipped", ex);
+            return null;
+        }
+        if (files == null) {
+            return null;
+        }
+
+        List<String> result = new ArrayList<>(files.size());
+        for (ChangedFile file : files) {
+            if (file.getPath() != null) {
+                result.add(file.getPath());
+            }
+        }
+        if (result.isEmpty()) {
+            // Every change touches some file, so the response did not tell which ones
+            return null;
+        }
+        paths = Collections.unmodifiableList(result);
+        CACHE.put(key, paths);
+        return paths;
+    }
+
+    interface Loader {
+        List<ChangedFile> load();
+    }
+}
@@ -0,0 +1,95 @@
+package org.jenkinsci.plugins.assembla;
+
+/**
+ * Glob pattern for branch names and paths. {@code *} matches within a path segment, {@code **} across
+ * segments and {@code ?} a single character other than {@code /}. Matching does not allocate.
+ */
+public final class Glob {
+    private final String pattern;
+
+    public Glob(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public static boolean isGlob(String pattern) {
+        return pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0;
+    }
+
+    /**
+     * Length of the literal text before the first wildcard.
+     */
+    public static int literalPrefixLength(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+        return pattern.length();
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public boolean matches(CharSequence text) {
+        return matches(0, text, 0);
+    }
+
+    /**
+     * Matches the pattern from {@code patternIndex} against the text from {@code textIndex}, lets callers that
+     * already compared a literal prefix skip it.
+     */
+    public boolean matches(int patternIndex, CharSequence text, int textIndex) {
+        int p = patternIndex;
+        int t = textIndex;
+
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+
+            if (c == '*') {
+                boolean deep = p + 1 < pattern.length() && pattern.charAt(p + 1) == '*';
+                int next = deep ? p + 2 : p + 1;
+
+                if (next == pattern.length()) {
+                    return deep || indexOf(text, '/', t) < 0;
+                }
+                for (int i = t; i <= text.length(); i++) {
+                    if (matches(next, text, i)) {
+                        return true;
+                    }
+                    if (!deep && i < text.length() && text.charAt(i) == '/') {
+                        return false;
+                    }
+                }
+                return false;
+            }
+
+            if (t >= text.length()) {
+                return false;
+            }
+            char actual = text.charAt(t);
+            if (c == '?' ? actual == '/' : c != actual) {
+                return false;
+            }
+            p++;
+            t++;
+        }
+
+        return t == text.length();
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
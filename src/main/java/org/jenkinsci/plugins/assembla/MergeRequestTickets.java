@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.jenkinsci.plugins.assembla.api.AssemblaClient;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.Ticket;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tickets linked to merge requests, shared by the start and result reports of every job building the merge
+ * request. An entry belongs to one merge request version, recognized by its source commit, and is dropped when a
+ * webhook reports a change of the merge request, since tickets may have been linked or unlinked. Failed lookups
+ * are not cached, the next report looks the tickets up again.
+ */
+public class MergeRequestTickets {
+    private static final Logger LOGGER = Logger.getLogger(MergeRequestTickets.class.getName());
+    static final int CACHE_SIZE = 1000;
+
+    // space:tool:merge request => tickets of the version last looked up
+    private static final Map<String, Tickets> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, Tickets>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Tickets> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            }
+    );
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+
+    private MergeRequestTickets() {
+    }
+
+    /**
+     * @return tickets linked to the merge request, empty if they could not be looked up
+     */
+    public static List<Ticket> get(MergeRequest mr) {
+        String key = getKey(mr);
+        String revision = mr.getCommitId();
+
+        Tickets cached = CACHE.get(key);
+        if (cached != null && (revision == null ? cached.revision == null : revision.equals(cached.revision))) {
+            HITS.incrementAndGet();
+            return cached.tickets;
+        }
+
+        MISSES.incrementAndGet();
+        List<Ticket> tickets;
+        try {
+            tickets = Collections.unmodifiableList(AssemblaBuildTrigger.getAssembla().getMergeRequestTickets(mr));
+        } catch (AssemblaClient.AssemblaApiException ex) {
+            LOGGER.log(Level.WARNING, "Failed to look up tickets of merge request " + key + ", tickets are not commented", ex);
+            return Collections.emptyList();
+        }
+        CACHE.put(key, new Tickets(revision, tickets));
+        return tickets;
+    }
+
+    /**
+     * Forgets the tickets of the merge request, called for every merge request webhook.
+     */
+    public static void invalidate(MergeRequest mr) {
+        CACHE.remove(getKey(mr));
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    public static Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hits", HITS.get());
+        result.put("misses", MISSES.get());
+        result.put("cached", CACHE.size());
+        return result;
+    }
+
+    private static String getKey(MergeRequest mr) {
+        return mr.getTargetSpaceId() + ":" + mr.getSpaceToolId() + ":" + mr.getId();
+    }
+
+    private static final class Tickets {
+        final String revision;
+        final List<Ticket> tickets;
+
+        Tickets(String revision, List<Ticket> tickets) {
+            this.revision = revision;
+            this.tickets = tickets;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.jenkinsci.plugins.assembla;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Message template split once into literal text and variable references, rendered the same way as
+ * {@link hudson.Util#replaceMacro(String, java.util.Map)}: {@code $name} and {@code ${name}} are replaced,
+ * {@code $$} becomes {@code $} and variables without a value are left as they are. Values are asked for only
+ * when the template references them.
+ */
+public final class MessageTemplate {
+    // Same syntax as Util.replaceMacro
+    private static final Pattern VARIABLE = Pattern.compile("\\$([A-Za-z0-9_]+|\\{[A-Za-z0-9_.]+\\}|\\$)");
+
+    private final String template;
+    // Literal text at even indexes, references at odd indexes as they appear in the template
+    private final String[] segments;
+    // Variable names of the references, null for $$
+    private final String[] names;
+
+    private MessageTemplate(String template, String[] segments, String[] names) {
+        this.template = template;
+        this.segments = segments;
+        this.names = names;
+    }
+
+    public static MessageTemplate compile(String template) {
+        if (template == null) {
+            return new MessageTemplate(null, new String[0], new String[0]);
+        }
+
+        List<String> segments = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Matcher matcher = VARIABLE.matcher(template);
+        int literalStart = 0;
+
+        while (matcher.find()) {
+            String reference = matcher.group();
+            String name = reference.substring(1);
+            if (name.equals("$")) {
+                name = null;
+            } else if (name.charAt(0) == '{') {
+                name = name.substring(1, name.length() - 1);
+            }
+
+            segments.add(template.substring(literalStart, matcher.start()));
+            segments.add(reference);
+            names.add(name);
+            literalStart = matcher.end();
+        }
+        segments.add(template.substring(literalStart));
+
+        return new MessageTemplate(template, segments.toArray(new String[segments.size()]), names.toArray(new String[names.size()]));
+    }
+
+    /**
+     * @return the rendered message, null if the template is null
+     */
+    public String render(Variables variables) {
+        if (template == null) {
+            return null;
+        }
+        if (segments.length == 1) {
+            return template;
+        }
+
+        StringBuilder result = new StringBuilder(template.length() + 32);
+        for (int i = 0; i < segments.length; i++) {
+            if (i % 2 == 0) {
+                result.append(segments[i]);
+                continue;
+            }
+
+            String name = names[i / 2];
+            String value = name == null ? "$" : variables.get(name);
+            result.append(value == null ? segments[i] : value);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Names of the variables the template references.
+     */
+    public Set<String> getVariableNames() {
+        Set<String> result = new LinkedHashSet<>();
+        for (String name : names) {
+            if (name != null) {
+                result.add(name);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Supplies variable values while rendering.
+     */
+    public interface Variables {
+        /**
+         * @return the value, null to leave the reference in the message
+         */
+        String get(String name);
+    }
+}
@@ -0,0 +1,505 @@
+package org.jenkinsci.plugins.assembla;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.assembla.api.AssemblaClient;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequestVersion;
+import org.jenkinsci.plugins.assembla.api.models.Ticket;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Comments and votes posted to Assembla, kept in {@code JENKINS_HOME/assembla-notifications.xml} until Assembla
+ * accepted them, so neither failures nor restarts lose them.
+ * <p>
+ * A notification is written to disk first and sent right away if the rate limit allows, otherwise a background
+ * thread sends it later. Failed notifications are retried with exponential backoff, up to
+ * {@link #MAX_ATTEMPTS} times. Notifications of one merge request or ticket are sent in order, and a newer vote
+ * replaces a pending vote for the same merge request version. Comments are not idempotent, so a comment whose
+ * connection broke after the request was sent is given up rather than risk posting it twice; a server error can
+ * still leave a duplicate comment behind when Assembla stored it before failing.
+ * <p>
+ * The file is only rewritten when notifications are added or removed, outside the outbox lock.
+ * <p>
+ * The last vote cast on each merge request version is remembered, for the {@link #VOTE_CACHE_SIZE} most recent
+ * versions, so repeating it, as reruns and replayed events do, does not reach Assembla.
+ */
+public class NotificationOutbox {
+    private static final Logger LOGGER = Logger.getLogger(NotificationOutbox.class.getName());
+
+    static final int NOTIFICATIONS_PER_SECOND = Integer.getInteger(
+            NotificationOutbox.class.getName() + ".notificationsPerSecond",
+            5
+    );
+    static final int MAX_ATTEMPTS = Integer.getInteger(NotificationOutbox.class.getName() + ".maxAttempts", 10);
+    static final int VOTE_CACHE_SIZE = Integer.getInteger(NotificationOutbox.class.getName() + ".voteCacheSize", 1000);
+    static final long MIN_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+    static final long MAX_BACKOFF = TimeUnit.HOURS.toMillis(1);
+
+    private static NotificationOutbox instance;
+
+    private final XmlFile file;
+    private final List<Notification> pending = new ArrayList<>();
+    // Changes of pending, and the change last written to disk
+    private long changes;
+    private long savedChanges;
+    private final Object saveLock = new Object();
+    private long nextId;
+    private ScheduledExecutorService sender;
+    private Jenkins jenkins;
+
+    // Token bucket, refilled with permitsPerSecond up to one second worth of permits
+    private final int permitsPerSecond;
+    private double permits;
+    private long refilledAt = System.nanoTime();
+
+    private long sent;
+    private long retried;
+    private long dropped;
+    private long collapsed;
+    private long skippedVotes;
+
+    // Merge request version => last vote Assembla accepted
+    private final Map<String, Notification.Type> castVotes = new LinkedHashMap<String, Notification.Type>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Notification.Type> eldest) {
+            return size() > VOTE_CACHE_SIZE;
+        }
+    };
+
+    NotificationOutbox(XmlFile file, int permitsPerSecond) {
+        this.file = file;
+        this.permitsPerSecond = Math.max(1, permitsPerSecond);
+        this.permits = this.permitsPerSecond;
+    }
+
+    /**
+     * The outbox of the running Jenkins, loaded from disk and started on first use.
+     */
+    public static synchronized NotificationOutbox get() {
+        Jenkins jenkins = Jenkins.getInstance();
+        if (instance == null || instance.jenkins != jenkins) {
+            if (instance != null) {
+                instance.stop();
+            }
+            instance = new NotificationOutbox(
+                    new XmlFile(new File(jenkins.getRootDir(), "assembla-notifications.xml")),
+                    NOTIFICATIONS_PER_SECOND
+            );
+            instance.jenkins = jenkins;
+            instance.load();
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Resumes sending notifications left over from before a restart.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void resume() {
+        get();
+    }
+
+    public void commentMergeRequest(MergeRequest mr, MergeRequestVersion version, String text) {
+        submit(Notification.forMergeRequest(Notification.Type.MERGE_REQUEST_COMMENT, mr, version, text));
+    }
+
+    public void upVoteMergeRequest(MergeRequest mr, MergeRequestVersion version) {
+        submit(Notification.forMergeRequest(Notification.Type.UP_VOTE, mr, version, null));
+    }
+
+    public void downVoteMergeRequest(MergeRequest mr, MergeRequestVersion version) {
+        submit(Notification.forMergeRequest(Notification.Type.DOWN_VOTE, mr, version, null));
+    }
+
+    public void createTicketComment(Ticket ticket, String text) {
+        submit(Notification.forTicket(ticket, text));
+    }
+
+    void submit(Notification notification) {
+        boolean sendNow;
+        synchronized (this) {
+            notification.id = nextId++;
+            notification.nextAttemptAt = System.currentTimeMillis();
+
+            if (notification.isVote()) {
+                boolean votePending = false;
+                for (Iterator<Notification> it = pending.iterator(); it.hasNext(); ) {
+                    Notification other = it.next();
+                    if (other.isVote() && other.isSameVersion(notification)) {
+                        if (other.sending) {
+                            votePending = true;
+                        } else {
+                            it.remove();
+                            changes++;
+                            collapsed++;
+                        }
+                    }
+                }
+
+                // A vote being sent may still change the outcome, only skip when nothing is in flight
+                if (!votePending && castVotes.get(notification.getVoteKey()) == notification.type) {
+                    skippedVotes++;
+                    notification = null;
+                }
+            }
+
+            if (notification != null) {
+                sendNow = isFirstOfKey(notification) && tryAcquire();
+                notification.sending = sendNow;
+                pending.add(notification);
+                changes++;
+            } else {
+                sendNow = false;
+            }
+        }
+        save();
+
+        if (sendNow) {
+            attempt(notification);
+        }
+    }
+
+    /**
+     * Sends the notifications that are due, as far as the rate limit allows.
+     *
+     * @return number of notifications attempted
+     */
+    int drain(long now) {
+        int attempted = 0;
+        while (true) {
+            Notification next = null;
+            synchronized (this) {
+                Set<String> blocked = new HashSet<>();
+                for (Notification notification : pending) {
+                    String key = notification.getKey();
+                    if (notification.sending || notification.nextAttemptAt > now) {
+                        blocked.add(key);
+                    } else if (!blocked.contains(key)) {
+                        if (!tryAcquire()) {
+                            return attempted;
+                        }
+                        notification.sending = true;
+                        next = notification;
+                        break;
+                    }
+                }
+            }
+            if (next == null) {
+                return attempted;
+            }
+
+            attempt(next);
+            attempted++;
+        }
+    }
+
+    private void attempt(Notification notification) {
+        try {
+            notification.send(AssemblaBuildTrigger.getAssembla());
+            synchronized (this) {
+                pending.remove(notification);
+                changes++;
+                sent++;
+                if (notification.isVote()) {
+                    castVotes.put(notification.getVoteKey(), notification.type);
+                }
+            }
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                notification.sending = false;
+                notification.attempts++;
+
+                if (!isRetryable(notification, ex) || notification.attempts >= MAX_ATTEMPTS) {
+                    LOGGER.log(Level.WARNING, "Giving up on " + notification + " after "
+                            + notification.attempts + " attempts", ex);
+                    pending.remove(notification);
+                    changes++;
+                    dropped++;
+                } else {
+                    long backoff = Math.min(MIN_BACKOFF << Math.min(notification.attempts - 1, 20), MAX_BACKOFF);
+                    LOGGER.log(Level.INFO, "Failed to send " + notification + ", retrying in "
+                            + TimeUnit.MILLISECONDS.toSeconds(backoff) + " s", ex);
+                    notification.nextAttemptAt = System.currentTimeMillis() + backoff;
+                    retried++;
+                }
+            }
+        }
+        save();
+    }
+
+    private static boolean isRetryable(Notification notification, RuntimeException ex) {
+        if (ex instanceof AssemblaClient.NotFoundError || ex instanceof AssemblaClient.ForbiddenError) {
+            return false;
+        }
+        // Assembla may have stored a comment before the connection broke, votes can be repeated safely
+        return notification.isVote()
+                || !(ex instanceof AssemblaClient.NetworkError)
+                || ((AssemblaClient.NetworkError) ex).isConnectFailure();
+    }
+
+    private boolean isFirstOfKey(Notification notification) {
+        String key = notification.getKey();
+        for (Notification other : pending) {
+            if (other.getKey().equals(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean tryAcquire() {
+        long now = System.nanoTime();
+        permits = Math.min(permitsPerSecond, permits + (now - refilledAt) * permitsPerSecond / 1e9);
+        refilledAt = now;
+        if (permits < 1) {
+            return false;
+        }
+        permits--;
+        return true;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long oldest = 0;
+        for (Notification notification : pending) {
+            oldest = Math.max(oldest, System.currentTimeMillis() - notification.createdAt);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pending", pending.size());
+        result.put("oldestPendingSeconds", TimeUnit.MILLISECONDS.toSeconds(oldest));
+        result.put("sent", sent);
+        result.put("retried", retried);
+        result.put("dropped", dropped);
+        result.put("collapsed", collapsed);
+        result.put("skippedVotes", skippedVotes);
+        result.put("cachedVotes", castVotes.size());
+        return result;
+    }
+
+    synchronized List<Notification> getPending() {
+        return new ArrayList<>(pending);
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            List<Notification> loaded = (List<Notification>) file.read();
+            if (loaded != null) {
+                for (Notification notification : loaded) {
+                    pending.add(notification);
+                    nextId = Math.max(nextId, notification.id + 1);
+                }
+                LOGGER.info("Loaded " + loaded.size() + " pending Assembla notifications");
+            }
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to load pending Assembla notifications from " + file, ex);
+        }
+    }
+
+    /**
+     * Writes the pending notifications if they changed since the last write. Must not be called holding the outbox
+     * lock; writes are serialized so an older list never replaces a newer one.
+     */
+    private void save() {
+        synchronized (saveLock) {
+            List<Notification> snapshot;
+            long snapshotChanges;
+            synchronized (this) {
+                if (changes == savedChanges) {
+                    return;
+                }
+                snapshot = new ArrayList<>(pending);
+                snapshotChanges = changes;
+            }
+
+            try {
+                file.write(snapshot);
+                savedChanges = snapshotChanges;
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to save pending Assembla notifications to " + file, ex);
+            }
+        }
+    }
+
+    synchronized void start() {
+        if (sender != null) {
+            return;
+        }
+        sender = Executors.newSingleThreadScheduledExecutor(
+                new NamingThreadFactory(new DaemonThreadFactory(), "Assembla notification outbox")
+        );
+        sender.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    drain(System.currentTimeMillis());
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to send Assembla notifications", ex);
+                }
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    synchronized void stop() {
+        if (sender != null) {
+            sender.shutdownNow();
+            sender = null;
+        }
+    }
+
+    /**
+     * Merge request holding just the ids the API calls of the outbox need, for models rebuilt after a restart.
+     */
+    static MergeRequest toMergeRequest(String spaceId, String toolId, int mergeRequestId) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", mergeRequestId);
+        json.addProperty("space_tool_id", toolId);
+        json.addProperty("target_space_id", spaceId);
+        return new Gson().fromJson(json, MergeRequest.class);
+    }
+
+    static MergeRequestVersion toMergeRequestVersion(int mergeRequestId, int version) {
+        JsonObject json = new JsonObject();
+        json.addProperty("merge_request_id", mergeRequestId);
+        json.addProperty("version", version);
+        return new Gson().fromJson(json, MergeRequestVersion.class);
+    }
+
+    /**
+     * A comment or vote. Only ids are persisted; the models are rebuilt from them after a restart.
+     */
+    static final class Notification {
+        enum Type { MERGE_REQUEST_COMMENT, UP_VOTE, DOWN_VOTE, TICKET_COMMENT }
+
+        long id;
+        Type type;
+        String spaceId;
+        String toolId;
+        int mergeRequestId;
+        int version;
+        int ticketNumber;
+        String text;
+        long createdAt = System.currentTimeMillis();
+        long nextAttemptAt;
+        int attempts;
+
+        // Objects the notification was created from, gone after a restart
+        private transient MergeRequest mr;
+        private transient MergeRequestVersion mrVersion;
+        private transient Ticket ticket;
+        transient boolean sending;
+
+        static Notification forMergeRequest(Type type, MergeRequest mr, MergeRequestVersion version, String text) {
+            Notification notification = new Notification();
+            notification.type = type;
+            notification.spaceId = mr.getTargetSpaceId();
+            notification.toolId = mr.getSpaceToolId();
+            notification.mergeRequestId = version.getMergeRequestId();
+            notification.version = version.getVersion();
+            notification.text = text;
+            notification.mr = mr;
+            notification.mrVersion = version;
+            return notification;
+        }
+
+        static Notification forTicket(Ticket ticket, String text) {
+            Notification notification = new Notification();
+            notification.type = Type.TICKET_COMMENT;
+            notification.spaceId = ticket.getSpaceId();
+            notification.ticketNumber = ticket.getNumber();
+            notification.text = text;
+            notification.ticket = ticket;
+            return notification;
+        }
+
+        String getKey() {
+            if (type == Type.TICKET_COMMENT) {
+                return "ticket:" + spaceId + ":" + ticketNumber;
+            }
+            return "mr:" + spaceId + ":" + toolId + ":" + mergeRequestId;
+        }
+
+        boolean isVote() {
+            return type == Type.UP_VOTE || type == Type.DOWN_VOTE;
+        }
+
+        boolean isSameVersion(Notification other) {
+            return getKey().equals(other.getKey()) && version == other.version;
+        }
+
+        String getVoteKey() {
+            return getKey() + ":" + version;
+        }
+
+        void send(AssemblaClient client) {
+            switch (type) {
+                case MERGE_REQUEST_COMMENT:
+                    client.commentMergeRequest(getMergeRequest(), getMergeRequestVersion(), text);
+                    break;
+                case UP_VOTE:
+                    client.upVoteMergeRequest(getMergeRequest(), getMergeRequestVersion());
+                    break;
+                case DOWN_VOTE:
+                    client.downVoteMergeRequest(getMergeRequest(), getMergeRequestVersion());
+                    break;
+                case TICKET_COMMENT:
+                    client.createTicketComment(getTicket(), text);
+                    break;
+            }
+        }
+
+        private MergeRequest getMergeRequest() {
+            if (mr == null) {
+                mr = toMergeRequest(spaceId, toolId, mergeRequestId);
+            }
+            return mr;
+        }
+
+        private MergeRequestVersion getMergeRequestVersion() {
+            if (mrVersion == null) {
+                mrVersion = toMergeRequestVersion(mergeRequestId, version);
+            }
+            return mrVersion;
+        }
+
+        private Ticket getTicket() {
+            if (ticket == null) {
+                JsonObject json = new JsonObject();
+                json.addProperty("number", ticketNumber);
+                json.addProperty("space_id", spaceId);
+                ticket = new Gson().fromJson(json, Ticket.class);
+            }
+            return ticket;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + getKey() + (type == Type.TICKET_COMMENT ? "" : " version " + version);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.assembla;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides whether a change touched files a job cares about. Include and exclude patterns are separated by commas or
+ * new lines. A pattern is a {@link Glob} such as {@code services/billing/**} or {@code docs/*.md}, a pattern without
+ * wildcards matches the file itself and everything below it. A change is relevant if one of its files is included
+ * (every file is when there are no include patterns) and not excluded.
+ */
+public final class PathFilter {
+    public static final PathFilter ALL = compile("", "");
+
+    private final List<Glob> includes;
+    private final List<Glob> excludes;
+
+    private PathFilter(List<Glob> includes, List<Glob> excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    public static PathFilter compile(String includes, String excludes) {
+        return new PathFilter(parse(includes), parse(excludes));
+    }
+
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty();
+    }
+
+    public boolean matchesAny(List<String> paths) {
+        for (int i = 0; i < paths.size(); i++) {
+            String path = paths.get(i);
+            if (path == null) {
+                continue;
+            }
+            int start = path.startsWith("/") ? 1 : 0;
+            if ((includes.isEmpty() || matches(includes, path, start)) && !matches(excludes, path, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(List<Glob> globs, String path, int start) {
+        for (int i = 0; i < globs.size(); i++) {
+            if (globs.get(i).matches(0, path, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Glob> parse(String patterns) {
+        List<Glob> globs = new ArrayList<>();
+        if (patterns == null) {
+            return globs;
+        }
+
+        for (String pattern : patterns.split("[,\\n]")) {
+            pattern = pattern.trim();
+            while (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            while (pattern.endsWith("/")) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.isEmpty()) {
+                continue;
+            }
+
+            if (Glob.isGlob(pattern)) {
+                globs.add(new Glob(pattern));
+            } else {
+                globs.add(new Glob(pattern));
+                globs.add(new Glob(pattern + "/**"));
+            }
+        }
+        return globs;
+    }
+}
@@ -0,0 +1,178 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs build reports on a pool of its own, so builds never wait for Assembla. Reports sharing a key run one after
+ * the other in submission order, so a build's start comment is posted before its result. At most
+ * {@code maxPending} reports wait or run at a time; once that many are pending, submitting waits for one to finish,
+ * so a stalled Assembla API slows builds down instead of holding on to an ever growing number of them.
+ */
+public class ReportingOutbox {
+    private static final Logger LOGGER = Logger.getLogger(ReportingOutbox.class.getName());
+
+    private final ExecutorService executor;
+    private final int maxPending;
+
+    // Key => reports waiting for the one running under the key
+    private final Map<String, Deque<Report>> pending = new HashMap<>();
+    private int queued;
+
+    private long submitted;
+    private long completed;
+    private long failed;
+    private long throttled;
+    private final WebhookLatencyStats.Samples lagNanos = new WebhookLatencyStats.Samples();
+    private final WebhookLatencyStats.Samples durationNanos = new WebhookLatencyStats.Samples();
+
+    public ReportingOutbox(int threads) {
+        this(threads, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxPending reports waiting or running at most, further submissions wait
+     */
+    public ReportingOutbox(int threads, int maxPending) {
+        this.maxPending = maxPending;
+        this.executor = Executors.newFixedThreadPool(
+                Math.max(1, threads),
+                new NamingThreadFactory(new DaemonThreadFactory(), "Assembla build reporter")
+        );
+    }
+
+    /**
+     * Queues the report and returns immediately, unless {@code maxPending} reports are pending already: then waits
+     * until one of them has run. The report is queued anyway if the calling thread is interrupted meanwhile.
+     *
+     * @param key         reports with the same key run in order
+     * @param description used in log messages
+     */
+    public void submit(String key, String description, Runnable report) {
+        final Report entry = new Report(key, description, report);
+
+        synchronized (this) {
+            if (queued >= maxPending) {
+                throttled++;
+                LOGGER.warning("Waiting to queue report of " + description + ", " + queued + " reports are pending");
+                awaitCapacity();
+            }
+            submitted++;
+            queued++;
+            Deque<Report> reports = pending.get(key);
+            if (reports != null) {
+                reports.add(entry);
+                return;
+            }
+            pending.put(key, new ArrayDeque<Report>());
+        }
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                drain(entry);
+            }
+        });
+    }
+
+    private synchronized void awaitCapacity() {
+        try {
+            while (queued >= maxPending) {
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain(Report report) {
+        while (report != null) {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                report.task.run();
+                success = true;
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, "Failed to report " + report.description + " to Assembla", ex);
+            }
+            long done = System.nanoTime();
+
+            synchronized (this) {
+                queued--;
+                notifyAll();
+                if (success) {
+                    completed++;
+                } else {
+                    failed++;
+                }
+                lagNanos.add(start - report.submittedAt);
+                durationNanos.add(done - start);
+
+                String key = report.key;
+                report = pending.get(key).poll();
+                if (report == null) {
+                    pending.remove(key);
+                }
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("submitted", submitted);
+        result.put("completed", completed);
+        result.put("failed", failed);
+        result.put("throttled", throttled);
+        result.put("pending", queued);
+        result.put("lag", lagNanos.toMap());
+        result.put("duration", durationNanos.toMap());
+        return result;
+    }
+
+    /**
+     * Whether all submitted reports have run.
+     */
+    public synchronized boolean isIdle() {
+        return queued == 0;
+    }
+
+    /**
+     * Waits until all submitted reports have run.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isIdle()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static final class Report {
+        final String key;
+        final String description;
+        final Runnable task;
+        final long submittedAt = System.nanoTime();
+
+        Report(String key, String description, Runnable task) {
+            this.key = key;
+            this.description = description;
+            this.task = task;
+        }
+    }
+}
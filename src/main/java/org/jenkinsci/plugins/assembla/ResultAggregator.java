@@ -0,0 +1,393 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.XmlFile;
+import hudson.init.InitMilestone;
+import hudson.init.Initializer;
+import hudson.model.Result;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequestVersion;
+import org.jenkinsci.plugins.assembla.api.models.Ticket;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the results of all jobs building one merge request version and reports them together: one summary
+ * comment on the merge request and its tickets, and a single vote. The results are reported once the window
+ * after the first result has passed. Results arriving later open a new window, whose summary and vote cover the
+ * latest result of every job built for the version so far, so a late success does not outvote an earlier failure.
+ * <p>
+ * Results of the {@link #MAX_VERSIONS} most recent versions, including windows not reported yet, are kept in
+ * {@code JENKINS_HOME/assembla-results.xml}, so a restart within the window does not lose them.
+ */
+public class ResultAggregator {
+    private static final Logger LOGGER = Logger.getLogger(ResultAggregator.class.getName());
+
+    static final int MAX_VERSIONS = Integer.getInteger(ResultAggregator.class.getName() + ".maxVersions", 1000);
+
+    private final XmlFile file;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+            new NamingThreadFactory(new DaemonThreadFactory(), "Assembla result aggregator")
+    );
+
+    // Merge request version => latest result of every job, least recently used first. Versions with a window
+    // still open are not evicted.
+    private final Map<String, VersionResults> versions = new LinkedHashMap<String, VersionResults>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VersionResults> eldest) {
+            return size() > MAX_VERSIONS && !eldest.getValue().windowOpen;
+        }
+    };
+    // Changes of versions, and the change last written to disk
+    private long changes;
+    private long savedChanges;
+    private final Object saveLock = new Object();
+
+    private long results;
+    private long summaries;
+
+    public ResultAggregator(XmlFile file) {
+        this.file = file;
+    }
+
+    /**
+     * Resumes the windows left open before a restart.
+     */
+    @Initializer(after = InitMilestone.JOB_LOADED)
+    public static void resume() {
+        AssemblaBuildTrigger.getDesc().getResultAggregator();
+    }
+
+    /**
+     * @param mergeRequestComments whether to comment and vote on the merge request
+     * @param ticketComments       whether to comment on the merge request tickets
+     */
+    public void add(MergeRequest mr, MergeRequestVersion version, JobResult result,
+                    boolean mergeRequestComments, boolean ticketComments, long windowMillis) {
+        final String key = mr.getTargetSpaceId() + ":" + mr.getSpaceToolId() + ":" + version.getMergeRequestId()
+                + ":" + version.getVersion();
+
+        synchronized (this) {
+            results++;
+            changes++;
+            VersionResults versionResults = versions.get(key);
+            if (versionResults == null) {
+                versionResults = new VersionResults(mr, version);
+                versions.put(key, versionResults);
+            }
+
+            // A rebuild of the same job replaces its earlier result
+            versionResults.results.put(result.getJobName(), result);
+            versionResults.mergeRequestComments |= mergeRequestComments;
+            versionResults.ticketComments |= ticketComments;
+
+            if (!versionResults.windowOpen) {
+                versionResults.windowOpen = true;
+                versionResults.reportAt = System.currentTimeMillis() + windowMillis;
+                scheduleFlush(key, windowMillis);
+            }
+        }
+        save();
+    }
+
+    private void scheduleFlush(final String key, long delayMillis) {
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(key);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void flush(String key) {
+        VersionResults report;
+        synchronized (this) {
+            VersionResults versionResults = versions.get(key);
+            if (versionResults == null || !versionResults.windowOpen) {
+                return;
+            }
+            report = versionResults.copy();
+            versionResults.windowOpen = false;
+            versionResults.mergeRequestComments = false;
+            versionResults.ticketComments = false;
+            changes++;
+            summaries++;
+        }
+
+        try {
+            report(report);
+        } catch (RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to report results of merge request " + key, ex);
+        }
+        // Saved once handed to the notification outbox, a restart in between reports the window again
+        save();
+    }
+
+    private void report(VersionResults report) {
+        Collection<JobResult> all = report.results.values();
+        String summary = getSummary(all);
+        NotificationOutbox outbox = NotificationOutbox.get();
+
+        if (report.mergeRequestComments) {
+            outbox.commentMergeRequest(report.getMergeRequest(), report.getMergeRequestVersion(), summary);
+
+            Result result = getCombinedResult(all);
+            if (result == Result.SUCCESS) {
+                outbox.upVoteMergeRequest(report.getMergeRequest(), report.getMergeRequestVersion());
+            } else if (result == Result.FAILURE || result == Result.UNSTABLE) {
+                outbox.downVoteMergeRequest(report.getMergeRequest(), report.getMergeRequestVersion());
+            }
+        }
+
+        if (report.ticketComments) {
+            for (Ticket ticket : MergeRequestTickets.get(report.getMergeRequest())) {
+                outbox.createTicketComment(ticket, summary);
+            }
+        }
+    }
+
+    static String getSummary(Collection<JobResult> results) {
+        StringBuilder summary = new StringBuilder("Build results:");
+        for (JobResult result : results) {
+            summary.append('\n')
+                    .append(result.getJobName()).append(" #").append(result.getBuildNumber()).append(": ")
+                    .append(getResultName(result)).append(' ').append(result.getBuildUrl());
+            appendConfigurations(summary, result.getConfigurations(), "  ");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * One line per configuration of a multi-configuration build.
+     */
+    static String getConfigurationSummary(Collection<JobResult> configurations) {
+        StringBuilder summary = new StringBuilder("Configuration results:");
+        appendConfigurations(summary, configurations, "");
+        return summary.toString();
+    }
+
+    private static void appendConfigurations(StringBuilder summary, Collection<JobResult> configurations, String indent) {
+        for (JobResult configuration : configurations) {
+            summary.append('\n').append(indent)
+                    .append(configuration.getJobName()).append(": ")
+                    .append(getResultName(configuration)).append(' ').append(configuration.getBuildUrl());
+        }
+    }
+
+    private static String getResultName(JobResult result) {
+        return result.getResult() == null ? "UNKNOWN" : result.getResult().toString();
+    }
+
+    /**
+     * @return FAILURE if any job failed, else UNSTABLE if any job was unstable, SUCCESS if all jobs succeeded and
+     * null otherwise, for example when a job was aborted
+     */
+    static Result getCombinedResult(Collection<JobResult> results) {
+        boolean unstable = false;
+        boolean success = true;
+        for (JobResult result : results) {
+            if (result.getResult() == Result.FAILURE) {
+                return Result.FAILURE;
+            }
+            unstable |= result.getResult() == Result.UNSTABLE;
+            success &= result.getResult() == Result.SUCCESS;
+        }
+        if (unstable) {
+            return Result.UNSTABLE;
+        }
+        return success ? Result.SUCCESS : null;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("results", results);
+        result.put("summaries", summaries);
+        result.put("pendingMergeRequests", getPendingKeys().size());
+        result.put("versions", versions.size());
+        return result;
+    }
+
+    /**
+     * Versions whose window is open.
+     */
+    synchronized List<String> getPendingKeys() {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, VersionResults> entry : versions.entrySet()) {
+            if (entry.getValue().windowOpen) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Loads the results saved before a restart and reopens their windows; overdue ones are reported right away.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            Map<String, VersionResults> loaded = (Map<String, VersionResults>) file.read();
+            if (loaded == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, VersionResults> entry : loaded.entrySet()) {
+                versions.put(entry.getKey(), entry.getValue());
+                if (entry.getValue().windowOpen) {
+                    scheduleFlush(entry.getKey(), Math.max(0, entry.getValue().reportAt - now));
+                }
+            }
+            savedChanges = changes;
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.log(Level.WARNING, "Failed to load Assembla build results from " + file, ex);
+        }
+    }
+
+    /**
+     * Writes the results if they changed since the last write, outside the aggregator lock. Writes are serialized
+     * so an older copy never replaces a newer one.
+     */
+    private void save() {
+        synchronized (saveLock) {
+            Map<String, VersionResults> snapshot = new LinkedHashMap<>();
+            long snapshotChanges;
+            synchronized (this) {
+                if (changes == savedChanges) {
+                    return;
+                }
+                for (Map.Entry<String, VersionResults> entry : versions.entrySet()) {
+                    snapshot.put(entry.getKey(), entry.getValue().copy());
+                }
+                snapshotChanges = changes;
+            }
+
+            try {
+                file.write(snapshot);
+                savedChanges = snapshotChanges;
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to save Assembla build results to " + file, ex);
+            }
+        }
+    }
+
+    public static class JobResult {
+        private final String jobName;
+        private final int buildNumber;
+        // Kept by name, a deserialized Result would not be one of the Result constants
+        private final String result;
+        private final String buildUrl;
+        private final List<JobResult> configurations;
+
+        public JobResult(String jobName, int buildNumber, Result result, String buildUrl) {
+            this(jobName, buildNumber, result, buildUrl, Collections.<JobResult>emptyList());
+        }
+
+        /**
+         * @param configurations results of the configurations of a multi-configuration build
+         */
+        public JobResult(String jobName, int buildNumber, Result result, String buildUrl,
+                         List<JobResult> configurations) {
+            this.jobName = jobName;
+            this.buildNumber = buildNumber;
+            this.result = result == null ? null : result.toString();
+            this.buildUrl = buildUrl;
+            this.configurations = new ArrayList<>(configurations);
+        }
+
+        public String getJobName() {
+            return jobName;
+        }
+
+        public int getBuildNumber() {
+            return buildNumber;
+        }
+
+        public Result getResult() {
+            return result == null ? null : Result.fromString(result);
+        }
+
+        public String getBuildUrl() {
+            return buildUrl;
+        }
+
+        public List<JobResult> getConfigurations() {
+            return Collections.unmodifiableList(configurations);
+        }
+    }
+
+    /**
+     * Results of one merge request version. Only ids are persisted; the models are rebuilt from them after a
+     * restart.
+     */
+    static final class VersionResults {
+        String spaceId;
+        String toolId;
+        int mergeRequestId;
+        int version;
+        final Map<String, JobResult> results = new LinkedHashMap<>();
+        boolean windowOpen;
+        long reportAt;
+        boolean mergeRequestComments;
+        boolean ticketComments;
+
+        private transient MergeRequest mr;
+        private transient MergeRequestVersion mrVersion;
+
+        VersionResults() {
+        }
+
+        VersionResults(MergeRequest mr, MergeRequestVersion version) {
+            this.spaceId = mr.getTargetSpaceId();
+            this.toolId = mr.getSpaceToolId();
+            this.mergeRequestId = version.getMergeRequestId();
+            this.version = version.getVersion();
+            this.mr = mr;
+            this.mrVersion = version;
+        }
+
+        VersionResults copy() {
+            VersionResults copy = new VersionResults();
+            copy.spaceId = spaceId;
+            copy.toolId = toolId;
+            copy.mergeRequestId = mergeRequestId;
+            copy.version = version;
+            copy.results.putAll(results);
+            copy.windowOpen = windowOpen;
+            copy.reportAt = reportAt;
+            copy.mergeRequestComments = mergeRequestComments;
+            copy.ticketComments = ticketComments;
+            copy.mr = mr;
+            copy.mrVersion = mrVersion;
+            return copy;
+        }
+
+        MergeRequest getMergeRequest() {
+            if (mr == null) {
+                mr = NotificationOutbox.toMergeRequest(spaceId, toolId, mergeRequestId);
+            }
+            return mr;
+        }
+
+        MergeRequestVersion getMergeRequestVersion() {
+            if (mrVersion == null) {
+                mrVersion = NotificationOutbox.toMergeRequestVersion(mergeRequestId, version);
+            }
+            return mrVersion;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.model.AbstractProject;
+import org.jenkinsci.plugins.assembla.api.models.SpaceTool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Immutable snapshot of which jobs listen to which repository. Changes never touch a published table, they produce
+ * a new one via {@link #apply(Update)}, so readers can use the sets they got without locking.
+ * <p>
+ * Repositories whose space tool has been resolved are also indexed by clone URL and tool id, which lets webhooks
+ * be routed without asking Assembla which repository a URL belongs to.
+ * <p>
+ * Keys whose repository part is a glob or a {@code :}-prefixed regular expression (see {@link #isRepoPattern})
+ * are compiled and indexed per space, so {@link #getMatchingJobs} looks up the exact key first and then only
+ * tries the patterns of the webhook's space.
+ */
+public final class TriggerRoutingTable {
+    private static final Logger LOGGER = Logger.getLogger(TriggerRoutingTable.class.getName());
+    private static final String SSH_PREFIX = "git@";
+    private static final String HTTPS_PREFIX = "https://";
+
+    static final TriggerRoutingTable EMPTY = new TriggerRoutingTable(
+            Collections.<String, Set<AbstractProject<?, ?>>>emptyMap(),
+            Collections.<String, SpaceTool>emptyMap(),
+            0
+    );
+
+    private final Map<String, Set<AbstractProject<?, ?>>> repoJobs;
+    private final Map<String, SpaceTool> tools;
+    private final long version;
+
+    // Derived from tools
+    private final Map<String, Route> routesByUrl = new HashMap<>();
+    private final Map<String, Route> routesByToolId = new HashMap<>();
+    private final Set<String> spaces = new HashSet<>();
+    // Derived from repoJobs
+    private final Map<String, List<RepoPattern>> patternsBySpace = new HashMap<>();
+
+    private TriggerRoutingTable(Map<String, Set<AbstractProject<?, ?>>> repoJobs, Map<String, SpaceTool> tools, long version) {
+        this.repoJobs = repoJobs;
+        this.tools = tools;
+        this.version = version;
+
+        for (Map.Entry<String, Set<AbstractProject<?, ?>>> entry : repoJobs.entrySet()) {
+            String key = entry.getKey();
+            int separator = key.indexOf(':');
+            String space = separator < 0 ? key : key.substring(0, separator);
+            spaces.add(space);
+
+            if (separator >= 0 && isRepoPattern(key.substring(separator + 1))) {
+                RepoPattern pattern = RepoPattern.compile(key.substring(separator + 1), entry.getValue());
+                if (pattern != null) {
+                    List<RepoPattern> patterns = patternsBySpace.get(space);
+                    if (patterns == null) {
+                        patterns = new ArrayList<>();
+                        patternsBySpace.put(space, patterns);
+                    }
+                    patterns.add(pattern);
+                }
+            }
+        }
+
+        for (Map.Entry<String, SpaceTool> entry : tools.entrySet()) {
+            Route route = new Route(entry.getKey(), entry.getValue());
+            for (String url : getCloneUrls(entry.getValue())) {
+                routesByUrl.put(url, route);
+            }
+            if (entry.getValue().getId() != null) {
+                routesByToolId.put(entry.getValue().getId(), route);
+            }
+        }
+    }
+
+    /**
+     * @return unmodifiable set of jobs registered under the key, empty if there are none
+     */
+    public Set<AbstractProject<?, ?>> getJobs(String key) {
+        Set<AbstractProject<?, ?>> jobs = repoJobs.get(key);
+        if (jobs == null) {
+            return Collections.emptySet();
+        }
+        return jobs;
+    }
+
+    /**
+     * Jobs listening to the repository by its exact name plus those whose repository pattern matches the name.
+     *
+     * @return unmodifiable set, empty if there are none
+     */
+    public Set<AbstractProject<?, ?>> getMatchingJobs(String spaceName, String repoName) {
+        if (spaceName == null || repoName == null) {
+            return Collections.emptySet();
+        }
+        String space = spaceName.toLowerCase(Locale.ENGLISH);
+        String repo = repoName.toLowerCase(Locale.ENGLISH);
+        Set<AbstractProject<?, ?>> exact = getJobs(space + ":" + repo);
+
+        List<RepoPattern> patterns = patternsBySpace.get(space);
+        if (patterns == null) {
+            return exact;
+        }
+
+        Set<AbstractProject<?, ?>> matching = null;
+        for (RepoPattern pattern : patterns) {
+            if (pattern.matches(repo)) {
+                if (matching == null) {
+                    matching = new LinkedHashSet<>(exact);
+                }
+                matching.addAll(pattern.jobs);
+            }
+        }
+        return matching == null ? exact : Collections.unmodifiableSet(matching);
+    }
+
+    /**
+     * @return whether the repository name of a trigger is a glob or a {@code :}-prefixed regular expression
+     * rather than the name of one repository
+     */
+    public static boolean isRepoPattern(String repoName) {
+        return repoName != null && (repoName.startsWith(":") || Glob.isGlob(repoName));
+    }
+
+    /**
+     * @param normalizedUrl repository URL normalized by {@link WebhookPayloadScanner#normalizeRepositoryUrl(String)}
+     * @return the resolved repository with that clone URL, or null if no started trigger resolved to it
+     */
+    public Route getRouteByUrl(String normalizedUrl) {
+        return routesByUrl.get(normalizedUrl);
+    }
+
+    public Route getRouteByToolId(String toolId) {
+        return toolId == null ? null : routesByToolId.get(toolId);
+    }
+
+    /**
+     * @return whether any job listens to a repository of the space
+     */
+    public boolean hasSpace(String spaceWikiName) {
+        return spaceWikiName != null && spaces.contains(spaceWikiName.toLowerCase(Locale.ENGLISH));
+    }
+
+    public SpaceTool getTool(String key) {
+        return tools.get(key);
+    }
+
+    public Collection<Set<AbstractProject<?, ?>>> getAllJobs() {
+        return repoJobs.values();
+    }
+
+    public int size() {
+        return repoJobs.size();
+    }
+
+    /**
+     * Incremented for every published change, lets caches keyed on routing tell when they are stale.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    TriggerRoutingTable apply(Update update) {
+        if (update.isEmpty()) {
+            return this;
+        }
+
+        Map<String, SpaceTool> nextTools = new HashMap<>(tools);
+
+        Map<String, Set<AbstractProject<?, ?>>> changed = new HashMap<>();
+        for (Change change : update.changes) {
+            Set<AbstractProject<?, ?>> jobs = changed.get(change.key);
+            if (jobs == null) {
+                jobs = new LinkedHashSet<>(getJobs(change.key));
+                changed.put(change.key, jobs);
+            }
+
+            if (change.add) {
+                jobs.add(change.project);
+            } else {
+                jobs.remove(change.project);
+            }
+        }
+
+        Map<String, Set<AbstractProject<?, ?>>> next = new HashMap<>(repoJobs);
+        for (Map.Entry<String, Set<AbstractProject<?, ?>>> entry : changed.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                next.remove(entry.getKey());
+                nextTools.remove(entry.getKey());
+            } else {
+                next.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+            }
+        }
+
+        // A lookup finishing after its trigger stopped must not leave a route to a repo without jobs
+        for (Map.Entry<String, SpaceTool> tool : update.tools.entrySet()) {
+            if (next.containsKey(tool.getKey())) {
+                nextTools.put(tool.getKey(), tool.getValue());
+            }
+        }
+
+        return new TriggerRoutingTable(Collections.unmodifiableMap(next), nextTools, version + 1);
+    }
+
+    /**
+     * Builds a table holding only the registrations of the update. Resolved tools of repos still registered
+     * are kept.
+     */
+    TriggerRoutingTable replace(Update update) {
+        TriggerRoutingTable rebuilt = new TriggerRoutingTable(
+                Collections.<String, Set<AbstractProject<?, ?>>>emptyMap(),
+                tools,
+                version
+        ).apply(update);
+
+        Map<String, SpaceTool> kept = new HashMap<>(rebuilt.tools);
+        kept.keySet().retainAll(rebuilt.repoJobs.keySet());
+        return new TriggerRoutingTable(rebuilt.repoJobs, kept, version + 1);
+    }
+
+    /**
+     * Normalized URLs a repository can be cloned from, its URL plus the SSH or HTTPS counterpart.
+     */
+    static List<String> getCloneUrls(SpaceTool tool) {
+        List<String> urls = new ArrayList<>();
+        String url = WebhookPayloadScanner.normalizeRepositoryUrl(tool.getUrl());
+        if (url.isEmpty()) {
+            return urls;
+        }
+        urls.add(url);
+
+        if (url.startsWith(SSH_PREFIX)) {
+            int colon = url.indexOf(':', SSH_PREFIX.length());
+            if (colon > 0) {
+                urls.add(HTTPS_PREFIX + url.substring(SSH_PREFIX.length(), colon) + "/" + url.substring(colon + 1));
+            }
+        } else if (url.startsWith(HTTPS_PREFIX)) {
+            int slash = url.indexOf('/', HTTPS_PREFIX.length());
+            if (slash > 0) {
+                urls.add(SSH_PREFIX + url.substring(HTTPS_PREFIX.length(), slash) + ":" + url.substring(slash + 1));
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Resolved repository and the key its jobs are registered under.
+     */
+    public static class Route {
+        private final String key;
+        private final SpaceTool tool;
+
+        Route(String key, SpaceTool tool) {
+            this.key = key;
+            this.tool = tool;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public SpaceTool getTool() {
+            return tool;
+        }
+    }
+
+    /**
+     * Compiled repository pattern of a key and the jobs registered under it. Globs are matched against the lower
+     * case repository name, regular expressions ignore case.
+     */
+    private static final class RepoPattern {
+        private final Glob glob;
+        private final Pattern regex;
+        final Set<AbstractProject<?, ?>> jobs;
+
+        private RepoPattern(Glob glob, Pattern regex, Set<AbstractProject<?, ?>> jobs) {
+            this.glob = glob;
+            this.regex = regex;
+            this.jobs = jobs;
+        }
+
+        /**
+         * @return the compiled pattern, null if the regular expression is invalid
+         */
+        static RepoPattern compile(String pattern, Set<AbstractProject<?, ?>> jobs) {
+            if (!pattern.startsWith(":")) {
+                return new RepoPattern(new Glob(pattern.toLowerCase(Locale.ENGLISH)), null, jobs);
+            }
+            try {
+                return new RepoPattern(null, Pattern.compile(pattern.substring(1), Pattern.CASE_INSENSITIVE), jobs);
+            } catch (PatternSyntaxException ex) {
+                LOGGER.warning("Ignoring invalid repository pattern " + pattern + ": " + ex.getDescription());
+                return null;
+            }
+        }
+
+        boolean matches(String repo) {
+            return glob != null ? glob.matches(repo) : regex.matcher(repo).matches();
+        }
+    }
+
+    /**
+     * Registrations and removals to publish together as one new table.
+     */
+    public static class Update {
+        private final List<Change> changes = new ArrayList<>();
+        private final Map<String, SpaceTool> tools = new HashMap<>();
+
+        public Update add(String key, AbstractProject<?, ?> project) {
+            changes.add(new Change(key, project, true));
+            return this;
+        }
+
+        public Update remove(String key, AbstractProject<?, ?> project) {
+            changes.add(new Change(key, project, false));
+            return this;
+        }
+
+        /**
+         * Records the space tool the jobs under the key listen to. Dropped again once the last job under the key
+         * is removed.
+         */
+        public Update resolve(String key, SpaceTool tool) {
+            tools.put(key, tool);
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return changes.isEmpty() && tools.isEmpty();
+        }
+    }
+
+    private static class Change {
+        final String key;
+        final AbstractProject<?, ?> project;
+        final boolean add;
+
+        Change(String key, AbstractProject<?, ?> project, boolean add) {
+            this.key = key;
+            this.project = project;
+            this.add = add;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queues webhook work per space and serves the spaces with deficit round-robin, so one busy space
+ * can not starve the others. Workers are started on demand up to {@code workers} and exit once
+ * every queue is drained.
+ * <p>
+ * The total queue depth is bounded by {@code capacity}. Low priority work is only admitted while
+ * the queue is below 80% of the capacity, which leaves the rest for high priority work.
+ */
+public class WebhookDispatcher {
+    public enum Priority {
+        HIGH,
+        LOW
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(WebhookDispatcher.class.getName());
+    private static final int MAX_TRACKED_SPACES = 256;
+
+    private final int workers;
+    private final int quantum;
+    private final int capacity;
+    private final int lowPriorityCapacity;
+    private final ExecutorService executor;
+
+    private final Map<String, SpaceQueue> queues = new HashMap<>();
+    private final ArrayDeque<SpaceQueue> active = new ArrayDeque<>();
+    private final Map<String, SpaceStats> stats = new LinkedHashMap<String, SpaceStats>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SpaceStats> eldest) {
+            return size() > MAX_TRACKED_SPACES && !queues.containsKey(eldest.getKey());
+        }
+    };
+    private int runningWorkers;
+    private int depth;
+    private long rejectedHigh;
+    private long rejectedLow;
+
+    public WebhookDispatcher(int workers, int quantum) {
+        this(workers, quantum, Integer.MAX_VALUE);
+    }
+
+    public WebhookDispatcher(int workers, int quantum, int capacity) {
+        this.workers = Math.max(1, workers);
+        this.quantum = Math.max(1, quantum);
+        this.capacity = Math.max(1, capacity);
+        this.lowPriorityCapacity = Math.max(1, (int) (this.capacity * 0.8));
+        this.executor = Executors.newCachedThreadPool(
+                new NamingThreadFactory(new DaemonThreadFactory(), "Assembla webhook worker")
+        );
+    }
+
+    public Future<WebhookEventStatus> submit(String space, int cost, Callable<WebhookEventStatus> task) {
+        return submit(space, cost, Priority.HIGH, 0, task);
+    }
+
+    /**
+     * Queues a task for the given space.
+     *
+     * @param cost relative cost of the task, spaces are granted {@code quantum} cost units per round
+     * @param timeoutMillis how long to wait for free space in the queue, 0 to fail immediately
+     * @throws RejectedExecutionException if the queue stays full
+     */
+    public synchronized Future<WebhookEventStatus> submit(String space, int cost, Priority priority, long timeoutMillis,
+                                                          Callable<WebhookEventStatus> task) {
+        int limit = priority == Priority.HIGH ? capacity : lowPriorityCapacity;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        while (depth >= limit) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                reject(priority);
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                reject(priority);
+            }
+        }
+
+        WorkItem item = new WorkItem(space, cost, task);
+
+        SpaceQueue queue = queues.get(space);
+        if (queue == null) {
+            queue = new SpaceQueue(space);
+            queues.put(space, queue);
+            active.addLast(queue);
+        }
+        queue.items.addLast(item);
+        depth++;
+        getSpaceStats(space).enqueued++;
+
+        if (runningWorkers < workers) {
+            runningWorkers++;
+            executor.execute(new Worker());
+        }
+
+        return item;
+    }
+
+    public synchronized int getQueueDepth() {
+        return depth;
+    }
+
+    /**
+     * Whether every queued task has finished.
+     */
+    public synchronized boolean isIdle() {
+        return depth == 0 && runningWorkers == 0;
+    }
+
+    public synchronized int getQueueDepth(String space) {
+        SpaceQueue queue = queues.get(space);
+        return queue == null ? 0 : queue.items.size();
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> spaces = new LinkedHashMap<>();
+        for (SpaceStats spaceStats : stats.values()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("queueDepth", getQueueDepth(spaceStats.space));
+            values.put("enqueued", spaceStats.enqueued);
+            values.put("processed", spaceStats.processed);
+            values.put("averageWaitMillis", spaceStats.processed == 0 ? 0 : spaceStats.totalWaitMillis / spaceStats.processed);
+            values.put("maxWaitMillis", spaceStats.maxWaitMillis);
+            spaces.put(spaceStats.space, values);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("queueDepth", depth);
+        result.put("capacity", capacity);
+        result.put("lowPriorityCapacity", lowPriorityCapacity);
+        result.put("rejectedHighPriority", rejectedHigh);
+        result.put("rejectedLowPriority", rejectedLow);
+        result.put("activeWorkers", runningWorkers);
+        result.put("maxWorkers", workers);
+        result.put("spaces", spaces);
+        return result;
+    }
+
+    static Future<WebhookEventStatus> completed(final WebhookEventStatus status) {
+        FutureTask<WebhookEventStatus> future = new FutureTask<>(new Callable<WebhookEventStatus>() {
+            @Override
+            public WebhookEventStatus call() {
+                return status;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    private synchronized WorkItem next() {
+        while (!active.isEmpty()) {
+            SpaceQueue queue = active.peekFirst();
+            if (!queue.granted) {
+                queue.deficit += quantum;
+                queue.granted = true;
+            }
+
+            WorkItem head = queue.items.peekFirst();
+            if (head.cost <= queue.deficit) {
+                queue.items.pollFirst();
+                queue.deficit -= head.cost;
+                depth--;
+                notifyAll();
+
+                if (queue.items.isEmpty()) {
+                    active.pollFirst();
+                    queues.remove(queue.space);
+                }
+
+                long waitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - head.enqueuedAt);
+                SpaceStats spaceStats = getSpaceStats(head.space);
+                spaceStats.processed++;
+                spaceStats.totalWaitMillis += waitMillis;
+                spaceStats.maxWaitMillis = Math.max(spaceStats.maxWaitMillis, waitMillis);
+                return head;
+            }
+
+            // Quantum spent, move on to the next space keeping the remaining deficit
+            active.pollFirst();
+            queue.granted = false;
+            active.addLast(queue);
+        }
+
+        runningWorkers--;
+        return null;
+    }
+
+    private void reject(Priority priority) {
+        if (priority == Priority.HIGH) {
+            rejectedHigh++;
+        } else {
+            rejectedLow++;
+        }
+        throw new RejectedExecutionException("Webhook queue is full (" + depth + " events)");
+    }
+
+    private SpaceStats getSpaceStats(String space) {
+        SpaceStats spaceStats = stats.get(space);
+        if (spaceStats == null) {
+            spaceStats = new SpaceStats(space);
+            stats.put(space, spaceStats);
+        }
+        return spaceStats;
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            WorkItem item;
+            while ((item = next()) != null) {
+                try {
+                    item.run();
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.SEVERE, "Webhook worker failed", ex);
+                }
+            }
+        }
+    }
+
+    private static class WorkItem extends FutureTask<WebhookEventStatus> {
+        private final String space;
+        private final int cost;
+        private final long enqueuedAt = System.nanoTime();
+
+        WorkItem(String space, int cost, Callable<WebhookEventStatus> task) {
+            super(task);
+            this.space = space;
+            this.cost = cost;
+        }
+    }
+
+    private static class SpaceQueue {
+        private final String space;
+        private final ArrayDeque<WorkItem> items = new ArrayDeque<>();
+        private int deficit;
+        private boolean granted;
+
+        SpaceQueue(String space) {
+            this.space = space;
+        }
+    }
+
+    private static class SpaceStats {
+        private final String space;
+        private long enqueued;
+        private long processed;
+        private long totalWaitMillis;
+        private long maxWaitMillis;
+
+        SpaceStats(String space) {
+            this.space = space;
+        }
+    }
+}
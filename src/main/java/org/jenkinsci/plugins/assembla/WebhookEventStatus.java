@@ -0,0 +1,18 @@
+package org.jenkinsci.plugins.assembla;
+
+import java.util.Locale;
+
+/**
+ * Outcome of processing a single webhook event.
+ */
+public enum WebhookEventStatus {
+    PROCESSED,
+    IGNORED,
+    INVALID,
+    REJECTED,
+    FAILED;
+
+    public String getLabel() {
+        return name().toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,139 @@
+package org.jenkinsci.plugins.assembla;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Aggregates {@link WebhookTrace}s into latency percentiles per event type and keeps the most recent slow
+ * events with their full breakdown. Percentiles are computed over the last {@value #SAMPLES} events of each type.
+ */
+public class WebhookLatencyStats {
+    static final int SAMPLES = 1024;
+    private static final Logger LOGGER = Logger.getLogger(WebhookLatencyStats.class.getName());
+
+    private final long slowThresholdNanos;
+    private final int maxSlowEvents;
+
+    private final Map<WebhookPayload.EventType, EventTypeStats> eventTypes = new EnumMap<>(WebhookPayload.EventType.class);
+    private final ArrayDeque<Map<String, Object>> slowEvents = new ArrayDeque<>();
+
+    public WebhookLatencyStats(long slowThresholdMillis, int maxSlowEvents) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.maxSlowEvents = maxSlowEvents;
+    }
+
+    public void record(WebhookTrace trace) {
+        WebhookPayload payload = trace.getPayload();
+        WebhookPayload.EventType eventType = payload == null ? WebhookPayload.EventType.OTHER : payload.getEventType();
+        long total = trace.getTotalNanos();
+
+        Map<String, Object> slowEvent = null;
+        if (total >= slowThresholdNanos && maxSlowEvents > 0) {
+            slowEvent = trace.toMap();
+            LOGGER.info("Slow webhook event: " + slowEvent);
+        }
+
+        synchronized (this) {
+            EventTypeStats stats = eventTypes.get(eventType);
+            if (stats == null) {
+                stats = new EventTypeStats();
+                eventTypes.put(eventType, stats);
+            }
+            stats.record(trace);
+
+            if (slowEvent != null) {
+                if (slowEvents.size() >= maxSlowEvents) {
+                    slowEvents.pollFirst();
+                }
+                slowEvents.addLast(slowEvent);
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> types = new LinkedHashMap<>();
+        for (Map.Entry<WebhookPayload.EventType, EventTypeStats> entry : eventTypes.entrySet()) {
+            types.put(entry.getKey().getLabel(), entry.getValue().toMap());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("slowThresholdMillis", TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos));
+        result.put("eventTypes", types);
+        result.put("slowEvents", new ArrayList<>(slowEvents));
+        return result;
+    }
+
+    private static class EventTypeStats {
+        private long count;
+        private final Samples total = new Samples();
+        private final Samples[] spans = new Samples[WebhookTrace.Span.values().length];
+
+        EventTypeStats() {
+            for (int i = 0; i < spans.length; i++) {
+                spans[i] = new Samples();
+            }
+        }
+
+        void record(WebhookTrace trace) {
+            count++;
+            total.add(trace.getTotalNanos());
+            for (WebhookTrace.Span span : WebhookTrace.Span.values()) {
+                spans[span.ordinal()].add(trace.getSpanNanos(span));
+            }
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> breakdown = new LinkedHashMap<>();
+            for (WebhookTrace.Span span : WebhookTrace.Span.values()) {
+                breakdown.put(span.getLabel(), spans[span.ordinal()].toMap());
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", count);
+            result.put("total", total.toMap());
+            result.put("spans", breakdown);
+            return result;
+        }
+    }
+
+    /**
+     * Ring buffer of the last {@link #SAMPLES} values.
+     */
+    static class Samples {
+        private final long[] values = new long[SAMPLES];
+        private int size;
+        private int next;
+
+        void add(long value) {
+            values[next] = value;
+            next = (next + 1) % values.length;
+            size = Math.min(size + 1, values.length);
+        }
+
+        Map<String, Object> toMap() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("p50Micros", percentile(sorted, 50));
+            result.put("p90Micros", percentile(sorted, 90));
+            result.put("p99Micros", percentile(sorted, 99));
+            result.put("maxMicros", percentile(sorted, 100));
+            return result;
+        }
+
+        static long percentile(long[] sorted, int percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+            return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, index)]);
+        }
+    }
+}
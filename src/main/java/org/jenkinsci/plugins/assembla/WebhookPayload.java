@@ -1,32 +1,53 @@
 package org.jenkinsci.plugins.assembla;
 
-import com.google.gson.annotations.SerializedName;
-
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 /**
  * Created by pavel on 16/2/16.
  * Updated by jlentink on 13/7/2018
  */
 public class WebhookPayload {
-    private static final Pattern mergeRequestIdPattern = Pattern.compile("Merge Request (\\d+)");
-    private static final Pattern wikiNamePattern = Pattern.compile("^[a-z0-9-/@:\\_-]+\\.assembla\\.com[:/](?:svn/)?(?:[a-z0-9\\_-]+[/^])?([a-z0-9\\_-]+).*$", Pattern.CASE_INSENSITIVE);
-    private static final Logger LOGGER = Logger.getLogger(WebhookPayload.class.getName());
-
-    private String space;
-    private String action;
-    private String object;
-    private String title;
-    private String body;
-    private String author;
-    private String branch;
-    @SerializedName("repository_url")
-    private String repositoryUrl;
-    @SerializedName("commit_id")
-    private String commitId;
+    public enum EventType {
+        MERGE_REQUEST("Merge request"),
+        CHANGESET("Changeset"),
+        OTHER(null);
+
+        private final String object;
+
+        EventType(String object) {
+            this.object = object;
+        }
+
+        public static EventType fromObject(String object) {
+            for (EventType type : values()) {
+                if (type.object != null && type.object.equals(object)) {
+                    return type;
+                }
+            }
+            return OTHER;
+        }
+
+        public String getLabel() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    private final String space;
+    private final String action;
+    private final String object;
+    private final String title;
+    private final String body;
+    private final String author;
+    private final String branch;
+    private final String repositoryUrl;
+    private final String commitId;
+
+    // Derived once when the payload is decoded
+    private final EventType eventType;
+    private final String spaceWikiName;
+    private final Integer mergeRequestId;
+    private final Integer mergeRequestVersion;
+    private final String normalizedRepositoryUrl;
 
     //  Payload example:
     //  {
@@ -68,6 +89,12 @@ public class WebhookPayload {
         this.branch = branch;
         this.repositoryUrl = repositoryUrl;
         this.commitId = commitId;
+
+        this.eventType = EventType.fromObject(object);
+        this.spaceWikiName = WebhookPayloadScanner.parseSpaceWikiName(repositoryUrl);
+        this.normalizedRepositoryUrl = WebhookPayloadScanner.normalizeRepositoryUrl(repositoryUrl);
+        this.mergeRequestId = WebhookPayloadScanner.parseMergeRequestId(title);
+        this.mergeRequestVersion = WebhookPayloadScanner.parseMergeRequestVersion(body);
     }
 
     public String getSpaceName() {
@@ -75,19 +102,11 @@ public class WebhookPayload {
     }
 
     public String getSpaceWikiName() {
-        Matcher m = wikiNamePattern.matcher(repositoryUrl);
-        String wikiName = "";
-
-        try {
-            if (m.matches()) {
-                LOGGER.info(m.group(1));
-                wikiName = m.group(1);
-            }
-        } catch (IllegalStateException | NumberFormatException ex) {
-            LOGGER.log(Level.SEVERE, "Failed to parse space wiki name", ex);
-        }
+        return spaceWikiName;
+    }
 
-        return wikiName;
+    public String getNormalizedRepositoryUrl() {
+        return normalizedRepositoryUrl;
     }
 
     public String getAction() {
@@ -119,27 +138,26 @@ public class WebhookPayload {
     }
 
     public Integer getMergeRequestId() {
-        Matcher m = mergeRequestIdPattern.matcher(title);
-        Integer mergeRequestId = null;
-
-        try {
-            if (m.find()) {
-                mergeRequestId = Integer.parseInt(m.group(1));
-            }
+        return mergeRequestId;
+    }
 
-        } catch (IllegalStateException | NumberFormatException ex) {
-            LOGGER.log(Level.SEVERE, "Failed to parse merge request ID", ex);
-        }
+    /**
+     * @return merge request version mentioned in the event body, e.g. 6 for "updated Merge Request 2945043 (6)"
+     */
+    public Integer getMergeRequestVersion() {
+        return mergeRequestVersion;
+    }
 
-        return mergeRequestId;
+    public EventType getEventType() {
+        return eventType;
     }
 
     public boolean isMergeRequestEvent() {
-        return object.equals("Merge request");
+        return eventType == EventType.MERGE_REQUEST;
     }
 
     public boolean isChangesetEvent() {
-        return object.equals("Changeset");
+        return eventType == EventType.CHANGESET;
     }
 
     public boolean shouldTriggerBuild() {
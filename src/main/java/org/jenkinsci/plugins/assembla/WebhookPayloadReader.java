@@ -0,0 +1,250 @@
+package org.jenkinsci.plugins.assembla;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Decodes webhook payloads straight from the request reader. Only the fields {@link WebhookPayload} needs
+ * are materialized, everything else is skipped, and the reader refuses to consume more than
+ * {@code maxPayloadSize} characters.
+ */
+public class WebhookPayloadReader {
+    public static final int DEFAULT_MAX_PAYLOAD_SIZE = 256 * 1024;
+
+    private final int maxPayloadSize;
+
+    public WebhookPayloadReader() {
+        this(DEFAULT_MAX_PAYLOAD_SIZE);
+    }
+
+    public WebhookPayloadReader(int maxPayloadSize) {
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    public WebhookPayload read(Reader reader) throws IOException {
+        JsonReader json = new JsonReader(new BoundedReader(reader, maxPayloadSize));
+
+        try {
+            WebhookPayload payload = readPayload(json);
+
+            if (json.peek() != JsonToken.END_DOCUMENT) {
+                throw new InvalidPayloadException("Unexpected data after webhook payload");
+            }
+
+            return payload;
+        } catch (MalformedJsonException | EOFException | IllegalStateException ex) {
+            throw new InvalidPayloadException("Malformed webhook payload: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Opens a stream of payloads, either a JSON array of events or newline-delimited JSON objects.
+     * The whole stream is bounded by {@code maxBatchSize} characters.
+     */
+    public Batch openBatch(Reader reader, long maxBatchSize) {
+        return new Batch(new JsonReader(new BoundedReader(reader, maxBatchSize)));
+    }
+
+    WebhookPayload readPayload(JsonReader json) throws IOException {
+        String space = null;
+        String action = null;
+        String object = null;
+        String title = null;
+        String body = null;
+        String author = null;
+        String branch = null;
+        String repositoryUrl = null;
+        String commitId = null;
+
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new InvalidPayloadException("Webhook payload must be a JSON object, got " + json.peek());
+        }
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            switch (name) {
+                case "space":
+                    space = nextString(json);
+                    break;
+                case "action":
+                    action = nextString(json);
+                    break;
+                case "object":
+                    object = nextString(json);
+                    break;
+                case "title":
+                    title = nextString(json);
+                    break;
+                case "body":
+                    body = nextString(json);
+                    break;
+                case "author":
+                    author = nextString(json);
+                    break;
+                case "branch":
+                    branch = nextString(json);
+                    break;
+                case "repository_url":
+                    repositoryUrl = nextString(json);
+                    break;
+                case "commit_id":
+                    commitId = nextString(json);
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+
+        return new WebhookPayload(space, action, object, title, body, author, branch, repositoryUrl, commitId);
+    }
+
+    private String nextString(JsonReader json) throws IOException {
+        switch (json.peek()) {
+            case STRING:
+            case NUMBER:
+                return json.nextString();
+            case BOOLEAN:
+                return String.valueOf(json.nextBoolean());
+            case NULL:
+                json.nextNull();
+                return null;
+            default:
+                json.skipValue();
+                return null;
+        }
+    }
+
+    public class Batch {
+        private final JsonReader json;
+        private boolean started;
+        private boolean array;
+        private int index;
+
+        private Batch(JsonReader json) {
+            this.json = json;
+        }
+
+        public boolean hasNext() throws IOException {
+            try {
+                if (!started) {
+                    started = true;
+                    if (peekTopLevel() == JsonToken.BEGIN_ARRAY) {
+                        json.beginArray();
+                        array = true;
+                    }
+                }
+
+                if (array) {
+                    if (json.hasNext()) {
+                        return true;
+                    }
+                    json.endArray();
+                    if (peekTopLevel() != JsonToken.END_DOCUMENT) {
+                        throw new InvalidPayloadException("Unexpected data after webhook batch");
+                    }
+                    return false;
+                }
+
+                return peekTopLevel() != JsonToken.END_DOCUMENT;
+            } catch (MalformedJsonException | EOFException | IllegalStateException ex) {
+                throw new InvalidPayloadException("Malformed webhook batch: " + ex.getMessage());
+            }
+        }
+
+        /**
+         * @return next payload or {@code null} if the next element is well-formed JSON but not an object.
+         * The element is skipped in that case and the batch can be read further.
+         */
+        public WebhookPayload next() throws IOException {
+            int element = index++;
+            try {
+                if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                    json.skipValue();
+                    return null;
+                }
+                return readPayload(json);
+            } catch (MalformedJsonException | EOFException | IllegalStateException ex) {
+                throw new InvalidPayloadException("Malformed webhook batch element " + element + ": " + ex.getMessage());
+            }
+        }
+
+        /**
+         * Lenient mode is what lets JsonReader move on to the next of several top-level values. It is only on
+         * while peeking there, so elements are parsed as strictly as single payloads.
+         */
+        private JsonToken peekTopLevel() throws IOException {
+            json.setLenient(true);
+            try {
+                return json.peek();
+            } finally {
+                json.setLenient(false);
+            }
+        }
+    }
+
+    public static class InvalidPayloadException extends IOException {
+        public InvalidPayloadException(String message) {
+            super(message);
+        }
+    }
+
+    public static class PayloadTooLargeException extends InvalidPayloadException {
+        public PayloadTooLargeException(long limit) {
+            super("Webhook payload exceeds " + limit + " characters");
+        }
+    }
+
+    static class BoundedReader extends FilterReader {
+        private final long limit;
+        private long consumed;
+
+        BoundedReader(Reader in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c = super.read();
+            if (c != -1) {
+                count(1);
+            }
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int n = super.read(cbuf, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) throws PayloadTooLargeException {
+            consumed += n;
+            if (consumed > limit) {
+                throw new PayloadTooLargeException(limit);
+            }
+        }
+    }
+}
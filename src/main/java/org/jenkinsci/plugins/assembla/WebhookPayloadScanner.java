@@ -0,0 +1,189 @@
+package org.jenkinsci.plugins.assembla;
+
+import java.util.Locale;
+
+/**
+ * Hand-written scanners for the values {@link WebhookPayload} derives from the raw webhook fields.
+ * They match what the former regular expressions accepted:
+ * <pre>
+ * ^[a-z0-9-/@:\_-]+\.assembla\.com[:/](?:svn/)?(?:[a-z0-9\_-]+[/^])?([a-z0-9\_-]+).*$  (case insensitive)
+ * Merge Request (\d+)
+ * </pre>
+ */
+public final class WebhookPayloadScanner {
+    private static final String ASSEMBLA_HOST_SUFFIX = ".assembla.com";
+    private static final String SVN_PREFIX = "svn/";
+    private static final String MERGE_REQUEST_MARKER = "Merge Request ";
+
+    private WebhookPayloadScanner() {
+    }
+
+    /**
+     * Extracts space wiki name from repository URL, returns empty string if URL is not recognized.
+     */
+    public static String parseSpaceWikiName(String url) {
+        if (url == null) {
+            return "";
+        }
+
+        int length = url.length();
+        int hostEnd = 0;
+        while (hostEnd < length && isHostChar(url.charAt(hostEnd))) {
+            hostEnd++;
+        }
+
+        if (hostEnd == 0 || !url.regionMatches(true, hostEnd, ASSEMBLA_HOST_SUFFIX, 0, ASSEMBLA_HOST_SUFFIX.length())) {
+            return "";
+        }
+
+        int pos = hostEnd + ASSEMBLA_HOST_SUFFIX.length();
+        if (pos >= length || (url.charAt(pos) != ':' && url.charAt(pos) != '/')) {
+            return "";
+        }
+        pos++;
+
+        for (int i = pos; i < length; i++) {
+            if (isLineTerminator(url.charAt(i))) {
+                return "";
+            }
+        }
+
+        if (url.regionMatches(true, pos, SVN_PREFIX, 0, SVN_PREFIX.length())) {
+            String name = scanWikiName(url, pos + SVN_PREFIX.length());
+            if (name != null) {
+                return name;
+            }
+        }
+
+        String name = scanWikiName(url, pos);
+        return name == null ? "" : name;
+    }
+
+    /**
+     * Finds the first "Merge Request &lt;id&gt;" occurrence, returns {@code null} if there is none
+     * or the number does not fit into an int.
+     */
+    public static Integer parseMergeRequestId(String text) {
+        int digits = findMergeRequestNumber(text);
+        if (digits < 0) {
+            return null;
+        }
+        return parseInt(text, digits, skipDigits(text, digits));
+    }
+
+    /**
+     * Finds the version from "Merge Request &lt;id&gt; (&lt;version&gt;)", returns {@code null} if there is none.
+     */
+    public static Integer parseMergeRequestVersion(String text) {
+        int digits = findMergeRequestNumber(text);
+        if (digits < 0) {
+            return null;
+        }
+
+        int pos = skipDigits(text, digits);
+        if (!text.startsWith(" (", pos)) {
+            return null;
+        }
+        pos += 2;
+
+        int end = skipDigits(text, pos);
+        if (end == pos || end >= text.length() || text.charAt(end) != ')') {
+            return null;
+        }
+        return parseInt(text, pos, end);
+    }
+
+    /**
+     * Canonical form of a repository URL used for comparisons: trimmed, lower case,
+     * without trailing slashes and ".git" suffix.
+     */
+    public static String normalizeRepositoryUrl(String url) {
+        if (url == null) {
+            return "";
+        }
+
+        String normalized = url.trim().toLowerCase(Locale.ENGLISH);
+        int end = normalized.length();
+        while (end > 0 && normalized.charAt(end - 1) == '/') {
+            end--;
+        }
+        if (normalized.startsWith(".git", end - 4)) {
+            end -= 4;
+        }
+        return normalized.substring(0, end);
+    }
+
+    private static String scanWikiName(String url, int start) {
+        int end = skipNameChars(url, start);
+
+        if (end > start && end < url.length() && (url.charAt(end) == '/' || url.charAt(end) == '^')) {
+            int nameEnd = skipNameChars(url, end + 1);
+            if (nameEnd > end + 1) {
+                return url.substring(end + 1, nameEnd);
+            }
+        }
+
+        return end > start ? url.substring(start, end) : null;
+    }
+
+    private static int findMergeRequestNumber(String text) {
+        if (text == null) {
+            return -1;
+        }
+
+        int from = 0;
+        while (true) {
+            int idx = text.indexOf(MERGE_REQUEST_MARKER, from);
+            if (idx < 0) {
+                return -1;
+            }
+
+            int digits = idx + MERGE_REQUEST_MARKER.length();
+            if (digits < text.length() && isDigit(text.charAt(digits))) {
+                return digits;
+            }
+            from = idx + 1;
+        }
+    }
+
+    private static Integer parseInt(String text, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+            if (value > Integer.MAX_VALUE) {
+                return null;
+            }
+        }
+        return (int) value;
+    }
+
+    private static int skipDigits(String text, int pos) {
+        while (pos < text.length() && isDigit(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipNameChars(String text, int pos) {
+        while (pos < text.length() && isNameChar(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_' || c == '-';
+    }
+
+    private static boolean isHostChar(char c) {
+        return isNameChar(c) || c == '/' || c == '@' || c == ':';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,93 @@
+package org.jenkinsci.plugins.assembla;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drops webhooks that can not reach any job before Assembla is asked which repository they belong to.
+ * <p>
+ * Events for repositories resolved in the {@link TriggerRoutingTable} pass, events for spaces without any trigger
+ * are dropped. Anything else needs a repository lookup, and repository URLs that turned out to have no jobs are
+ * remembered until the routing table changes or the entry expires.
+ */
+public class WebhookRouteFilter {
+    static final int MAX_UNROUTED_URLS = 10000;
+
+    private final long unroutedTtlMillis;
+    private final ConcurrentHashMap<String, UnroutedUrl> unroutedUrls = new ConcurrentHashMap<>();
+
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong droppedSpace = new AtomicLong();
+    private final AtomicLong droppedCached = new AtomicLong();
+    private final AtomicLong lookedUp = new AtomicLong();
+    private final AtomicLong unroutedAfterLookup = new AtomicLong();
+
+    public WebhookRouteFilter(long unroutedTtlMillis) {
+        this.unroutedTtlMillis = unroutedTtlMillis;
+    }
+
+    /**
+     * @return false if the event can not trigger any job and should be dropped
+     */
+    public boolean isRouted(WebhookPayload payload, TriggerRoutingTable table) {
+        String url = payload.getNormalizedRepositoryUrl();
+
+        if (table.getRouteByUrl(url) != null) {
+            routed.incrementAndGet();
+            return true;
+        }
+
+        if (!table.hasSpace(payload.getSpaceWikiName())) {
+            droppedSpace.incrementAndGet();
+            return false;
+        }
+
+        UnroutedUrl unrouted = unroutedUrls.get(url);
+        if (unrouted != null && unrouted.version == table.getVersion() && unrouted.expiresAt > System.currentTimeMillis()) {
+            droppedCached.incrementAndGet();
+            return false;
+        }
+
+        lookedUp.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Remembers that the repository lookup for the event found no jobs, as of the given routing table.
+     */
+    public void markUnrouted(WebhookPayload payload, TriggerRoutingTable table) {
+        unroutedAfterLookup.incrementAndGet();
+        if (unroutedUrls.size() >= MAX_UNROUTED_URLS) {
+            unroutedUrls.clear();
+        }
+        unroutedUrls.put(
+                payload.getNormalizedRepositoryUrl(),
+                new UnroutedUrl(table.getVersion(), System.currentTimeMillis() + unroutedTtlMillis)
+        );
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("routed", routed.get());
+        result.put("droppedUnknownSpace", droppedSpace.get());
+        result.put("droppedCachedUnrouted", droppedCached.get());
+        result.put("lookedUp", lookedUp.get());
+        result.put("unroutedAfterLookup", unroutedAfterLookup.get());
+        result.put("cachedUnroutedUrls", unroutedUrls.size());
+        result.put("unroutedTtlSeconds", TimeUnit.MILLISECONDS.toSeconds(unroutedTtlMillis));
+        return result;
+    }
+
+    private static class UnroutedUrl {
+        final long version;
+        final long expiresAt;
+
+        UnroutedUrl(long version, long expiresAt) {
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
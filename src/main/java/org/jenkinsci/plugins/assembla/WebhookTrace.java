@@ -0,0 +1,156 @@
+package org.jenkinsci.plugins.assembla;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timing of a single webhook event from the moment it was received until its builds are scheduled.
+ * The trace is bound to the worker thread while the event is processed, so code deeper in the call chain
+ * can record spans with {@link #record(Span, long)} without passing the trace around.
+ */
+public class WebhookTrace {
+    public enum Span {
+        READ("read"),
+        PARSE("parse"),
+        QUEUE("queue"),
+        RESOLVE_REPO("resolveRepo"),
+        FETCH_MERGE_REQUEST("fetchMergeRequest"),
+        FETCH_TARGET_REPO("fetchTargetRepo"),
+        FIND_TRIGGERS("findTriggers"),
+        SCHEDULE("schedule");
+
+        private final String label;
+
+        Span(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final ThreadLocal<WebhookTrace> CURRENT = new ThreadLocal<>();
+
+    private final long receivedAt;
+    private final long receivedAtMillis = System.currentTimeMillis();
+    private final long[] spans = new long[Span.values().length];
+    private WebhookPayload payload;
+    private long queuedAt;
+    private long finishedAt;
+
+    public WebhookTrace() {
+        this(System.nanoTime());
+    }
+
+    WebhookTrace(long receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+
+    /**
+     * Adds the time elapsed since {@code startNanos} to the span of the trace bound to the current thread, if any.
+     */
+    public static void record(Span span, long startNanos) {
+        WebhookTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.add(span, System.nanoTime() - startNanos);
+        }
+    }
+
+    static WebhookTrace current() {
+        return CURRENT.get();
+    }
+
+    void add(Span span, long nanos) {
+        spans[span.ordinal()] += nanos;
+    }
+
+    long getSpanNanos(Span span) {
+        return spans[span.ordinal()];
+    }
+
+    /**
+     * Total time from receipt until {@link #finish()}.
+     */
+    long getTotalNanos() {
+        return (finishedAt == 0 ? System.nanoTime() : finishedAt) - receivedAt;
+    }
+
+    WebhookPayload getPayload() {
+        return payload;
+    }
+
+    void queued(WebhookPayload payload) {
+        this.payload = payload;
+        this.queuedAt = System.nanoTime();
+    }
+
+    void attach() {
+        if (queuedAt != 0) {
+            add(Span.QUEUE, System.nanoTime() - queuedAt);
+        }
+        CURRENT.set(this);
+    }
+
+    void finish() {
+        finishedAt = System.nanoTime();
+        CURRENT.remove();
+    }
+
+    /**
+     * Wraps the request reader so the time spent waiting for the body is recorded as {@link Span#READ}.
+     */
+    Reader timeReads(Reader reader) {
+        return new TimedReader(reader);
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("receivedAt", receivedAtMillis);
+        if (payload != null) {
+            result.put("space", payload.getSpaceWikiName());
+            result.put("event", payload.getEventType().getLabel());
+            if (payload.isMergeRequestEvent()) {
+                result.put("mergeRequestId", payload.getMergeRequestId());
+            }
+        }
+        result.put("totalMicros", TimeUnit.NANOSECONDS.toMicros(getTotalNanos()));
+
+        Map<String, Object> breakdown = new LinkedHashMap<>();
+        for (Span span : Span.values()) {
+            breakdown.put(span.getLabel() + "Micros", TimeUnit.NANOSECONDS.toMicros(spans[span.ordinal()]));
+        }
+        result.put("spans", breakdown);
+        return result;
+    }
+
+    private class TimedReader extends FilterReader {
+        TimedReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                add(Span.READ, System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return super.read(cbuf, off, len);
+            } finally {
+                add(Span.READ, System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
@@ -12,6 +13,7 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.*;
@@ -28,8 +30,10 @@ import javax.net.ssl.SSLSession;
 import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
@@ -47,6 +51,7 @@ public class AssemblaClient {
     private static final Logger LOGGER = Logger.getLogger(AssemblaClient.class.getName());
     private static final String DEFAULT_API_ENDPOINT = "https://api.assembla.com/";
     private static final String DEFAULT_ASSEMBLA_URL = "https://app.assembla.com/";
+    public static final int MERGE_REQUESTS_PER_PAGE = 100;
     private String assemblaHost;
     private String apiKey;
     private String apiSecret;
@@ -68,6 +73,10 @@ public class AssemblaClient {
         return gson.fromJson(apiRequest("user", Method.GET), User.class);
     }
 
+    public User getUser(String idOrLogin) {
+        return gson.fromJson(apiRequest("users/" + idOrLogin, Method.GET), User.class);
+    }
+
     public Space getSpace(String spaceName) {
         String requestPath = String.format("spaces/%s", spaceName);
 
@@ -101,6 +110,33 @@ public class AssemblaClient {
         return gson.fromJson(apiRequest(requestPath, Method.GET), MergeRequest.class);
     }
 
+    /**
+     * Lists open merge requests of a repository page by page. When {@code etag} is given the request is conditional
+     * and an unchanged page comes back as {@link ConditionalResponse#isNotModified()} without a body.
+     */
+    public ConditionalResponse<List<MergeRequest>> getOpenMergeRequests(String spaceName, String toolId, int page, String etag) {
+        String requestPath = String.format(
+                "spaces/%s/space_tools/%s/merge_requests?status=open&per_page=%d&page=%d",
+                spaceName,
+                toolId,
+                MERGE_REQUESTS_PER_PAGE,
+                page
+        );
+        Type listType = new TypeToken<ArrayList<MergeRequest>>() {
+        }.getType();
+
+        ApiResponse response = apiRequest(requestPath, Method.GET, null, etag);
+        if (response.statusCode == HttpStatus.SC_NOT_MODIFIED) {
+            return new ConditionalResponse<>(null, response.etag, true);
+        }
+
+        List<MergeRequest> mergeRequests = gson.fromJson(response.body, listType);
+        if (mergeRequests == null) {
+            mergeRequests = new ArrayList<>();
+        }
+        return new ConditionalResponse<>(mergeRequests, response.etag, false);
+    }
+
     public List<MergeRequestVersion> getMergeRequestVersions(MergeRequest mr) {
         String requestPath = String.format(
                 "spaces/%s/space_tools/%s/merge_requests/%s/versions",
@@ -113,6 +149,30 @@ public class AssemblaClient {
         return gson.fromJson(apiRequest(requestPath, Method.GET), listType);
     }
 
+    /**
+     * Not checked against the real API yet, only used when the changed paths lookup is enabled.
+     */
+    public Commit getCommit(String spaceName, String toolId, String commitId) {
+        String requestPath = String.format("spaces/%s/space_tools/%s/commits/%s", spaceName, toolId, commitId);
+        return gson.fromJson(apiRequest(requestPath, Method.GET), Commit.class);
+    }
+
+    /**
+     * Not checked against the real API yet, only used when the changed paths lookup is enabled.
+     */
+    public List<ChangedFile> getMergeRequestVersionChangedFiles(MergeRequest mr, int version) {
+        String requestPath = String.format(
+                "spaces/%s/space_tools/%s/merge_requests/%s/versions/%s/changed_files",
+                mr.getTargetSpaceId(),
+                mr.getSpaceToolId(),
+                String.valueOf(mr.getId()),
+                String.valueOf(version)
+        );
+        Type listType = new TypeToken<ArrayList<ChangedFile>>() {
+        }.getType();
+        return gson.fromJson(apiRequest(requestPath, Method.GET), listType);
+    }
+
     public String getMergeRequestWebUrl(MergeRequest mr) {
         String url = "";
         try {
@@ -126,6 +186,9 @@ public class AssemblaClient {
         return url;
     }
 
+    /**
+     * @throws AssemblaApiException if the tickets could not be listed, rather than returning an empty list
+     */
     public List<Ticket> getMergeRequestTickets(MergeRequest mr) {
         String requestPath = String.format(
                 "spaces/%s/space_tools/%s/merge_requests/%s/tickets",
@@ -136,9 +199,14 @@ public class AssemblaClient {
         Type listType = new TypeToken<ArrayList<Ticket>>() {
         }.getType();
 
-        String response = apiRequest(requestPath, Method.GET);
+        ApiResponse response = apiRequest(requestPath, Method.GET, null, null);
+        if (response.statusCode != HttpStatus.SC_OK) {
+            throw new AssemblaApiException(
+                    "Request for " + getRequestUrl(requestPath) + " failed with status " + response.statusCode, null
+            );
+        }
 
-        List<Ticket> tickets = gson.fromJson(response, listType);
+        List<Ticket> tickets = gson.fromJson(response.body, listType);
 
         if (tickets == null) {
             tickets = new ArrayList<>();
@@ -270,9 +338,15 @@ public class AssemblaClient {
     }
 
     private String apiRequest(String path, Method requestMethod, Object body) {
+        return apiRequest(path, requestMethod, body, null).body;
+    }
+
+    private ApiResponse apiRequest(String path, Method requestMethod, Object body, String etag) {
         String url = getRequestUrl(path);
         HttpUriRequest method;
         String responseBody = "";
+        String responseEtag = null;
+        int statusCode = 0;
 
         if (requestMethod == Method.GET) {
             method = new HttpGet(url);
@@ -288,13 +362,25 @@ public class AssemblaClient {
         method.setHeader("Content-type", "application/json");
         method.setHeader("X-Api-Key", apiKey);
         method.setHeader("X-Api-Secret", apiSecret);
+        if (etag != null) {
+            method.setHeader("If-None-Match", etag);
+        }
 
         try (CloseableHttpClient client = getClient()) {
             LOGGER.info("Starting " + method.getMethod() + " " + url + " request to Assembla API");
 
 
             HttpResponse response = client.execute(method);
-            int statusCode = response.getStatusLine().getStatusCode();
+            statusCode = response.getStatusLine().getStatusCode();
+
+            Header etagHeader = response.getFirstHeader("ETag");
+            if (etagHeader != null) {
+                responseEtag = etagHeader.getValue();
+            }
+
+            if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+                return new ApiResponse(statusCode, "", responseEtag);
+            }
 
             if (!(statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED || statusCode == HttpStatus.SC_NO_CONTENT)) {
                 LOGGER.severe("Request for " + url + " failed, server returned: " + response.getStatusLine());
@@ -313,13 +399,19 @@ public class AssemblaClient {
                 throw new UnauthorizedError();
             } else if (statusCode == HttpStatus.SC_FORBIDDEN) {
                 throw new ForbiddenError();
+            } else if (requestMethod == Method.POST && (statusCode >= 500 || statusCode == 429)) {
+                // Comments and votes are retried by the notification outbox
+                throw new ServerError(url, statusCode);
             }
 
         } catch (IOException e) {
             LOGGER.log(Level.SEVERE, "Network failure", e);
+            if (requestMethod == Method.POST) {
+                throw new NetworkError(url, e);
+            }
         }
 
-        return responseBody;
+        return new ApiResponse(statusCode, responseBody, responseEtag);
     }
 
     private String apiRequest(String path, Method requestMethod) {
@@ -348,7 +440,50 @@ public class AssemblaClient {
         }
     }
 
-    public static class AssemblaApiException extends RuntimeException {}
+    private static class ApiResponse {
+        private final int statusCode;
+        private final String body;
+        private final String etag;
+
+        ApiResponse(int statusCode, String body, String etag) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+
+    public static class ConditionalResponse<T> {
+        private final T body;
+        private final String etag;
+        private final boolean notModified;
+
+        public ConditionalResponse(T body, String etag, boolean notModified) {
+            this.body = body;
+            this.etag = etag;
+            this.notModified = notModified;
+        }
+
+        public T getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public boolean isNotModified() {
+            return notModified;
+        }
+    }
+
+    public static class AssemblaApiException extends RuntimeException {
+        public AssemblaApiException() {
+        }
+
+        public AssemblaApiException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
 
     public static class NotFoundError extends AssemblaApiException {
         private String requestUrl;
@@ -371,4 +506,39 @@ public class AssemblaClient {
     public static class UnauthorizedError extends AssemblaApiException {}
 
     public static class ForbiddenError extends AssemblaApiException {}
+
+    /**
+     * A POST request was answered with a 5xx status or 429 Too Many Requests.
+     */
+    public static class ServerError extends AssemblaApiException {
+        private final int statusCode;
+
+        public ServerError(String requestUrl, int statusCode) {
+            super("Request for " + requestUrl + " failed with status " + statusCode, null);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+    }
+
+    /**
+     * A POST request could not be sent or its response could not be read.
+     */
+    public static class NetworkError extends AssemblaApiException {
+        public NetworkError(String requestUrl, IOException cause) {
+            super("Request for " + requestUrl + " failed", cause);
+        }
+
+        /**
+         * @return whether no connection was made, so the request did not reach Assembla
+         */
+        public boolean isConnectFailure() {
+            Throwable cause = getCause();
+            return cause instanceof ConnectException
+                    || cause instanceof ConnectTimeoutException
+                    || cause instanceof UnknownHostException;
+        }
+    }
 }
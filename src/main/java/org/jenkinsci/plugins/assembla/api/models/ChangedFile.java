@@ -0,0 +1,17 @@
+package org.jenkinsci.plugins.assembla.api.models;
+
+/**
+ * File touched by a commit or merge request version.
+ */
+public class ChangedFile {
+    private String path;
+    private String status;
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
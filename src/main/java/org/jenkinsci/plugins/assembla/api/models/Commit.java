@@ -0,0 +1,27 @@
+package org.jenkinsci.plugins.assembla.api.models;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.util.List;
+
+/**
+ * Repository commit with the files it changed.
+ */
+public class Commit {
+    private String id;
+    private String message;
+    @SerializedName("changed_files")
+    private List<ChangedFile> changedFiles;
+
+    public String getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public List<ChangedFile> getChangedFiles() {
+        return changedFiles;
+    }
+}
@@ -95,6 +95,15 @@ public class AssemblaMergeRequestCause extends AssemblaCause {
                                                              SpaceTool sourceTool,
                                                              SpaceTool targetTool,
                                                              WebhookPayload payload) {
+        return fromMergeRequest(mr, sourceTool, targetTool, payload.getCommitId(), payload.getAuthor(), payload.getAction());
+    }
+
+    public static AssemblaMergeRequestCause fromMergeRequest(MergeRequest mr,
+                                                             SpaceTool sourceTool,
+                                                             SpaceTool targetTool,
+                                                             String commitId,
+                                                             String author,
+                                                             String action) {
         return new AssemblaMergeRequestCause(
                 mr.getId(),
                 sourceTool.getUrl(),
@@ -102,12 +111,12 @@ public class AssemblaMergeRequestCause extends AssemblaCause {
                 mr.getSourceSymbol(),
                 targetTool.getUrl(),
                 mr.getTargetSymbol(),
-                payload.getCommitId(),
+                commitId,
                 mr.getDescription(),
                 mr.getTargetSpaceId(),
                 mr.getTitle(),
-                payload.getAuthor(),
-                payload.getAction()
+                author,
+                action
         );
     }
 
@@ -2,12 +2,18 @@ package org.jenkinsci.plugins.assembla;
 
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
+import hudson.model.Result;
 import hudson.model.TaskListener;
+import org.jenkinsci.plugins.assembla.cause.AssemblaMergeRequestCause;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.mockito.ArgumentCaptor;
 
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
@@ -44,12 +50,39 @@ public class AssemblaBuildListenerTest {
     @Test
     public void testOnStarted() throws Exception {
         listener.onStarted(build, mock(TaskListener.class));
-        verify(buildReporter, times(1)).onStarted(eq(build), any(TaskListener.class));
+        verify(buildReporter, timeout(5000).times(1)).onStarted(eq(build), any(TaskListener.class));
     }
 
     @Test
     public void testOnCompleted() throws Exception {
         listener.onCompleted(build, mock(TaskListener.class));
-        verify(buildReporter, times(1)).onCompleted(eq(build), any(TaskListener.class));
+        verify(buildReporter, timeout(5000).times(1)).onCompleted(eq(build), any(TaskListener.class));
+    }
+
+    @Test
+    public void testReportsConfigurationRunsWithParent() throws Exception {
+        AbstractProject configuration = mock(AbstractProject.class);
+        AbstractBuild run = mock(AbstractBuild.class);
+        given(run.getProject()).willReturn(configuration);
+        given(run.getRootBuild()).willReturn(build);
+        given(run.getResult()).willReturn(Result.FAILURE);
+        given(configuration.getDisplayName()).willReturn("jdk=7");
+        given(build.getRootBuild()).willReturn(build);
+        given(build.getExternalizableId()).willReturn("matrix#1");
+        given(build.getCause(AssemblaMergeRequestCause.class)).willReturn(mock(AssemblaMergeRequestCause.class));
+
+        listener.onStarted(run, mock(TaskListener.class));
+        listener.onCompleted(run, mock(TaskListener.class));
+        assertEquals(1, listener.getPendingConfigurationBuilds());
+
+        listener.onCompleted(build, mock(TaskListener.class));
+
+        ArgumentCaptor<List> results = ArgumentCaptor.forClass(List.class);
+        verify(buildReporter, timeout(5000).times(1)).onCompleted(eq(build), any(TaskListener.class), results.capture());
+        assertEquals(1, results.getValue().size());
+        assertEquals("jdk=7", ((ResultAggregator.JobResult) results.getValue().get(0)).getJobName());
+        assertEquals(0, listener.getPendingConfigurationBuilds());
+        verify(buildReporter, never()).onStarted(eq(run), any(TaskListener.class));
+        verify(buildReporter, never()).onCompleted(eq(run), any(TaskListener.class));
     }
 }
\ No newline at end of file
@@ -81,4 +81,17 @@ public class AssemblaBuildReporterTest {
         verify(client, times(1)).commentMergeRequest(eq(mr), eq(mrVersion), eq("testJob #1 build finished with status: FAILURE"));
         verify(client, times(1)).downVoteMergeRequest(eq(mr), eq(mrVersion));
     }
+
+    @Test
+    public void testSummarizesConfigurations() throws Exception {
+        given(build.getResult()).willReturn(Result.FAILURE);
+        reporter.onCompleted(build, mock(TaskListener.class), Arrays.asList(
+                new ResultAggregator.JobResult("jdk=8", 1, Result.FAILURE, "http://jenkins/job/testJob/jdk=8/1/")
+        ));
+        verify(client, times(1)).commentMergeRequest(eq(mr), eq(mrVersion), eq(
+                "testJob #1 build finished with status: FAILURE\n\n"
+                        + "Configuration results:\njdk=8: FAILURE http://jenkins/job/testJob/jdk=8/1/"
+        ));
+        verify(client, times(1)).downVoteMergeRequest(eq(mr), eq(mrVersion));
+    }
 }
\ No newline at end of file
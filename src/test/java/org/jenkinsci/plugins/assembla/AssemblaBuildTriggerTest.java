@@ -3,8 +3,12 @@ package org.jenkinsci.plugins.assembla;
 import hudson.model.AbstractProject;
 import hudson.model.FreeStyleProject;
 import hudson.model.ParametersAction;
+import hudson.model.ParametersDefinitionProperty;
 import hudson.model.ParameterValue;
+import hudson.model.StringParameterDefinition;
+import hudson.model.StringParameterValue;
 import org.jenkinsci.plugins.assembla.api.AssemblaClient;
+import org.jenkinsci.plugins.assembla.api.models.ChangedFile;
 import org.jenkinsci.plugins.assembla.api.models.SpaceTool;
 import org.jenkinsci.plugins.assembla.cause.AssemblaMergeRequestCause;
 import org.jenkinsci.plugins.assembla.cause.AssemblaPushCause;
@@ -14,6 +18,9 @@ import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.mockito.ArgumentCaptor;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.junit.Assert.*;
@@ -57,6 +64,50 @@ public class AssemblaBuildTriggerTest {
         verify(project, times(1)).scheduleBuild2(eq(0), eq(pushCause), any(ParametersAction.class));
     }
 
+    @Test
+    public void testHandlePushSkipsIrrelevantPaths() throws Exception {
+        AssemblaBuildTrigger trigger = AssemblaTestUtil.getTrigger();
+        trigger.setIncludedPaths("services/billing");
+        project = spy(project);
+        trigger.start(project, true);
+        AssemblaPushCause pushCause = AssemblaTestUtil.getPushCause();
+
+        trigger.handlePush(pushCause, changedPaths("push-1", "services/orders/pom.xml"));
+        verify(project, never()).scheduleBuild2(eq(0), eq(pushCause), any(ParametersAction.class));
+
+        trigger.handlePush(pushCause, changedPaths("push-2", "services/billing/pom.xml"));
+        verify(project, times(1)).scheduleBuild2(eq(0), eq(pushCause), any(ParametersAction.class));
+    }
+
+    @Test
+    public void testHandlePushBuildsWhenChangedPathsAreUnknown() throws Exception {
+        AssemblaBuildTrigger trigger = AssemblaTestUtil.getTrigger();
+        trigger.setExcludedPaths("docs");
+        project = spy(project);
+        trigger.start(project, true);
+        AssemblaPushCause pushCause = AssemblaTestUtil.getPushCause();
+
+        trigger.handlePush(pushCause, new ChangedPaths("push-unknown", new ChangedPaths.Loader() {
+            @Override
+            public List<ChangedFile> load() {
+                throw new AssemblaClient.AssemblaApiException();
+            }
+        }));
+        verify(project, times(1)).scheduleBuild2(eq(0), eq(pushCause), any(ParametersAction.class));
+    }
+
+    @Test
+    public void testHandlePushBuildsWhenNoChangedPathsAreListed() throws Exception {
+        AssemblaBuildTrigger trigger = AssemblaTestUtil.getTrigger();
+        trigger.setIncludedPaths("services/billing");
+        project = spy(project);
+        trigger.start(project, true);
+        AssemblaPushCause pushCause = AssemblaTestUtil.getPushCause();
+
+        trigger.handlePush(pushCause, changedPaths("push-empty"));
+        verify(project, times(1)).scheduleBuild2(eq(0), eq(pushCause), any(ParametersAction.class));
+    }
+
     @Test
     public void testHandleMergeRequest() throws Exception {
         AssemblaBuildTrigger trigger = spy(AssemblaTestUtil.getTrigger());
@@ -129,4 +180,86 @@ public class AssemblaBuildTriggerTest {
 
         assertFalse("Projects set is empty", projects.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRepoJobsAreImmutable() throws Exception {
+        AssemblaBuildTrigger trigger = AssemblaTestUtil.getTrigger();
+        trigger.start(project, true);
+
+        trigger.getDescriptor().getRepoJobs(trigger.getSpaceName(), trigger.getRepoName()).clear();
+    }
+
+    @Test
+    public void testRemovesRepoTriggerOnStop() throws Exception {
+        AssemblaBuildTrigger trigger = AssemblaTestUtil.getTrigger();
+        trigger.start(project, true);
+        Set<AbstractProject<?, ?>> started = trigger.getDescriptor()
+                .getRepoJobs(trigger.getSpaceName(), trigger.getRepoName());
+
+        trigger.stop();
+
+        assertTrue(started.contains(project));
+        assertFalse(trigger.getDescriptor().getRepoJobs(trigger.getSpaceName(), trigger.getRepoName()).contains(project));
+    }
+
+    @Test
+    public void testLoaderRegistersAllTriggers() throws Exception {
+        AssemblaBuildTrigger.AssemblaBuildTriggerDescriptor descriptor = AssemblaBuildTrigger.getDesc();
+        project.addTrigger(AssemblaTestUtil.getTrigger());
+        FreeStyleProject disabled = jenkinsRule.createFreeStyleProject("disabledJob");
+        disabled.addTrigger(AssemblaTestUtil.getTrigger());
+        disabled.disable();
+        long version = descriptor.getRoutingTable().getVersion();
+
+        new AssemblaTriggerLoader().onLoaded();
+
+        Set<AbstractProject<?, ?>> projects = descriptor.getRepoJobs("space-name", "git");
+        assertEquals(version + 1, descriptor.getRoutingTable().getVersion());
+        assertTrue(projects.contains(project));
+        assertFalse(projects.contains(disabled));
+        assertEquals(1, descriptor.getRegistrationStats().get("triggers"));
+    }
+
+    @Test
+    public void testCachesStaticDefaultParameters() throws Exception {
+        project.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "bar", "")));
+        AssemblaBuildTrigger trigger = AssemblaTestUtil.getTrigger();
+        trigger.start(project, true);
+
+        Map<String, ParameterValue> defaults = trigger.getJobDefaultParameters();
+        assertEquals(new StringParameterValue("foo", "bar"), defaults.get("foo"));
+        assertSame(defaults, trigger.getJobDefaultParameters());
+
+        new AssemblaTriggerLoader().onUpdated(project);
+        assertNotSame(defaults, trigger.getJobDefaultParameters());
+    }
+
+    @Test
+    public void testDoesNotCacheDynamicDefaultParameters() throws Exception {
+        project.addProperty(new ParametersDefinitionProperty(new StringParameterDefinition("foo", "bar", "") {
+            @Override
+            public StringParameterValue getDefaultParameterValue() {
+                return new StringParameterValue("foo", String.valueOf(System.nanoTime()));
+            }
+        }));
+        AssemblaBuildTrigger trigger = AssemblaTestUtil.getTrigger();
+        trigger.start(project, true);
+
+        assertNotSame(trigger.getJobDefaultParameters(), trigger.getJobDefaultParameters());
+    }
+
+    private ChangedPaths changedPaths(String key, String... paths) {
+        final List<ChangedFile> files = new ArrayList<>();
+        for (String path : paths) {
+            ChangedFile file = mock(ChangedFile.class);
+            given(file.getPath()).willReturn(path);
+            files.add(file);
+        }
+        return new ChangedPaths(key, new ChangedPaths.Loader() {
+            @Override
+            public List<ChangedFile> load() {
+                return files;
+            }
+        });
+    }
+}
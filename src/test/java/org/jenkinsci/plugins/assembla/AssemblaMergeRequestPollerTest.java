@@ -0,0 +1,164 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.model.FreeStyleProject;
+import org.jenkinsci.plugins.assembla.api.AssemblaClient;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.SpaceTool;
+import org.jenkinsci.plugins.assembla.api.models.User;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class AssemblaMergeRequestPollerTest {
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    AssemblaClient client = mock(AssemblaClient.class);
+    AssemblaWebhook webhook = mock(AssemblaWebhook.class);
+    SpaceTool tool = mock(SpaceTool.class);
+    AssemblaMergeRequestPoller poller;
+    AssemblaMergeRequestPoller.RepoState state;
+
+    @Before
+    public void setUp() throws Exception {
+        AssemblaBuildTrigger.setAssembla(client);
+        given(client.setConfig(anyString(), anyString(), anyString(), anyBoolean())).willCallRealMethod();
+        given(client.getTool(anyString(), anyString())).willReturn(tool);
+
+        poller = new AssemblaMergeRequestPoller(webhook);
+        state = new AssemblaMergeRequestPoller.RepoState("space-name", "git");
+    }
+
+    @Test
+    public void testFirstPollOnlySetsBaseline() throws Exception {
+        respondWith("etag-1", mergeRequest(1, "aaa", 1000));
+
+        assertFalse(poller.poll(state));
+        assertEquals(new Date(1000), state.watermark);
+        assertEquals("etag-1", state.etag);
+        verifyZeroInteractions(webhook);
+    }
+
+    @Test
+    public void testBuildsMergeRequestsUpdatedSinceLastPoll() throws Exception {
+        respondWith("etag-1", mergeRequest(2, "aaa", 1000));
+        poller.poll(state);
+
+        MergeRequest updated = mergeRequest(2, "bbb", 2000);
+        respondWith("etag-2", updated, mergeRequest(3, "ccc", 500));
+
+        assertTrue(poller.poll(state));
+        verify(webhook, times(1)).processMergeRequest(eq("space-name"), eq(tool), eq(updated), eq("bbb"), anyString(), eq("updated"));
+        verifyNoMoreInteractions(webhook);
+        assertEquals(new Date(2000), state.watermark);
+    }
+
+    @Test
+    public void testSkipsMergeRequestsSeenFromWebhook() throws Exception {
+        respondWith("etag-1", mergeRequest(4, "aaa", 1000));
+        poller.poll(state);
+
+        MergeRequest updated = mergeRequest(4, "bbb", 2000);
+        AssemblaMergeRequestPoller.markSeen(updated);
+        respondWith("etag-2", updated);
+
+        poller.poll(state);
+        verifyZeroInteractions(webhook);
+    }
+
+    @Test
+    public void testNotModifiedListingIsCheap() throws Exception {
+        respondWith("etag-1", mergeRequest(5, "aaa", 1000));
+        poller.poll(state);
+
+        given(client.getOpenMergeRequests("space-name", "git", 1, "etag-1"))
+                .willReturn(new AssemblaClient.ConditionalResponse<List<MergeRequest>>(null, "etag-1", true));
+
+        assertFalse(poller.poll(state));
+        assertEquals(1, state.notModified);
+        verify(client, never()).getOpenMergeRequests(anyString(), anyString(), eq(2), anyString());
+        verifyZeroInteractions(webhook);
+    }
+
+    @Test
+    public void testStopsPagingAtWatermark() throws Exception {
+        respondWith("etag-1", mergeRequest(6, "aaa", 5000));
+        poller.poll(state);
+
+        MergeRequest[] page = new MergeRequest[AssemblaClient.MERGE_REQUESTS_PER_PAGE];
+        for (int i = 0; i < page.length; i++) {
+            page[i] = mergeRequest(100 + i, "old-" + i, 1000);
+        }
+        respondWith("etag-2", page);
+
+        assertFalse(poller.poll(state));
+        verify(client, never()).getOpenMergeRequests(anyString(), anyString(), eq(2), any(String.class));
+        assertEquals(1L, state.getStats().get("pages"));
+        verifyZeroInteractions(webhook);
+    }
+
+    @Test
+    public void testPollsOnlyReposWithPollingTriggers() throws Exception {
+        AssemblaBuildTrigger polling = AssemblaTestUtil.getTrigger();
+        polling.setPollingEnabled(true);
+        FreeStyleProject polled = jenkinsRule.createFreeStyleProject("polled");
+        polled.addTrigger(polling);
+        polling.start(polled, true);
+
+        AssemblaBuildTrigger webhookOnly = AssemblaTestUtil.getTrigger();
+        FreeStyleProject notPolled = jenkinsRule.createFreeStyleProject("not-polled");
+        notPolled.addTrigger(webhookOnly);
+        webhookOnly.start(notPolled, true);
+
+        List<AssemblaMergeRequestPoller.RepoState> repos = poller.updateRepos(System.currentTimeMillis());
+
+        assertEquals(1, repos.size());
+        assertEquals("space-name:git", repos.get(0).getKey());
+        assertTrue(repos.get(0).nextPollAt <= System.currentTimeMillis() + AssemblaMergeRequestPoller.MIN_INTERVAL);
+    }
+
+    private void respondWith(String etag, MergeRequest... mergeRequests) {
+        given(client.getOpenMergeRequests(eq("space-name"), eq("git"), anyInt(), any(String.class)))
+                .willReturn(new AssemblaClient.ConditionalResponse<List<MergeRequest>>(Arrays.asList(mergeRequests), etag, false));
+    }
+
+    @Test
+    public void testReportsAuthorLoginLikeWebhooks() throws Exception {
+        respondWith("etag-1", mergeRequest(4, "aaa", 1000));
+        poller.poll(state);
+
+        MergeRequest updated = mergeRequest(4, "bbb", 2000);
+        given(updated.getUserId()).willReturn("user-id");
+        User user = mock(User.class);
+        given(user.getLogin()).willReturn("pavel.d");
+        given(client.getUser("user-id")).willReturn(user);
+        respondWith("etag-2", updated);
+
+        poller.poll(state);
+        verify(webhook, times(1)).processMergeRequest(eq("space-name"), eq(tool), eq(updated), eq("bbb"), eq("pavel.d"), eq("updated"));
+    }
+
+    private MergeRequest mergeRequest(int id, String commitId, long updatedAt) {
+        MergeRequest mr = mock(MergeRequest.class);
+        given(mr.getId()).willReturn(id);
+        given(mr.getCommitId()).willReturn(commitId);
+        given(mr.getSpaceToolId()).willReturn("tool-id");
+        given(mr.getCreatedAt()).willReturn(new Date(0));
+        given(mr.getUpdatedAt()).willReturn(new Date(updatedAt));
+        return mr;
+    }
+}
@@ -8,11 +8,19 @@ import static org.junit.Assert.*;
 
 import org.jvnet.hudson.test.JenkinsRule;
 import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import javax.servlet.http.HttpServletResponse;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.verify;
@@ -20,9 +28,11 @@ import static org.mockito.BDDMockito.times;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 
 /**
  * Created by pavel on 26/2/16.
@@ -41,6 +51,7 @@ public class AssemblaWebhookTest {
     @Before
     public void setUp() throws Exception {
         webhook = spy(new AssemblaWebhook());
+        AssemblaBuildTrigger.setAssembla(client);
         given(client.setConfig(anyString(), anyString(), anyString(), anyBoolean())).willCallRealMethod();
         given(client.getRepoByUrl(anyString(), anyString())).willReturn(mock(SpaceTool.class));
     }
@@ -54,14 +65,14 @@ public class AssemblaWebhookTest {
     public void testProcessesChangesetEvent() throws Exception {
         setPayload(AssemblaTestUtil.CHANGESET_PAYLOAD);
         webhook.doIndex(req, null);
-        verify(webhook, times(1)).processChangesetEvent(any(WebhookPayload.class));
+        verify(webhook, timeout(5000).times(1)).processChangesetEvent(any(WebhookPayload.class));
     }
 
     @Test
     public void testProcessesMergeRequestEvent() throws Exception {
         setPayload(AssemblaTestUtil.MR_PAYLOAD);
         webhook.doIndex(req, null);
-        verify(webhook, times(1)).processMergeRequestEvent(any(WebhookPayload.class));
+        verify(webhook, timeout(5000).times(1)).processMergeRequestEvent(any(WebhookPayload.class));
     }
 
     @Test
@@ -79,6 +90,109 @@ public class AssemblaWebhookTest {
         verify(br, times(1)).close();
     }
 
+    @Test
+    public void testRejectsMalformedPayload() throws Exception {
+        StaplerResponse resp = mock(StaplerResponse.class);
+        setPayload("{\"object\": \"Changeset\", ");
+        webhook.doIndex(req, resp);
+        verify(resp, times(1)).sendError(eq(HttpServletResponse.SC_BAD_REQUEST), anyString());
+        verify(webhook, never()).processChangesetEvent(any(WebhookPayload.class));
+    }
+
+    @Test
+    public void testAsksForRedeliveryWhenPayloadCannotBeRead() throws Exception {
+        StaplerResponse resp = mock(StaplerResponse.class);
+        given(req.getReader()).willThrow(new IOException("Connection reset"));
+        webhook.doIndex(req, resp);
+        verify(resp, times(1)).setHeader(eq("Retry-After"), anyString());
+        verify(resp, times(1)).sendError(eq(HttpServletResponse.SC_SERVICE_UNAVAILABLE), anyString());
+        verify(webhook, never()).processChangesetEvent(any(WebhookPayload.class));
+    }
+
+    @Test
+    public void testRejectsOversizedPayloadByContentLength() throws Exception {
+        StaplerResponse resp = mock(StaplerResponse.class);
+        setPayload(AssemblaTestUtil.CHANGESET_PAYLOAD);
+        given(req.getContentLength()).willReturn(AssemblaWebhook.MAX_PAYLOAD_SIZE + 1);
+        webhook.doIndex(req, resp);
+        verify(resp, times(1)).sendError(eq(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE), anyString());
+        verify(req, never()).getReader();
+    }
+
+    @Test
+    public void testProcessesBatchArray() throws Exception {
+        StringWriter out = new StringWriter();
+        setPayload("[" + AssemblaTestUtil.CHANGESET_PAYLOAD + ", " + AssemblaTestUtil.TICKET_PAYLOAD + ", 42]");
+        webhook.doBatch(req, getResponse(out));
+
+        verify(webhook, timeout(5000).times(1)).processChangesetEvent(any(WebhookPayload.class));
+        String summary = out.toString();
+        assertTrue(summary, summary.contains("\"received\":3"));
+        assertTrue(summary, summary.contains("\"processed\":1"));
+        assertTrue(summary, summary.contains("\"ignored\":1"));
+        assertTrue(summary, summary.contains("\"invalid\":1"));
+    }
+
+    @Test
+    public void testProcessesNewlineDelimitedBatch() throws Exception {
+        StringWriter out = new StringWriter();
+        setPayload(AssemblaTestUtil.CHANGESET_PAYLOAD + "\n" + AssemblaTestUtil.MR_PAYLOAD + "\n");
+        webhook.doBatch(req, getResponse(out));
+
+        verify(webhook, timeout(5000).times(1)).processChangesetEvent(any(WebhookPayload.class));
+        verify(webhook, timeout(5000).times(1)).processMergeRequestEvent(any(WebhookPayload.class));
+        assertTrue(out.toString(), out.toString().contains("\"received\":2"));
+    }
+
+    @Test
+    public void testReportsMalformedBatch() throws Exception {
+        StringWriter out = new StringWriter();
+        StaplerResponse resp = getResponse(out);
+        setPayload(AssemblaTestUtil.CHANGESET_PAYLOAD + "\n{\"object\": ");
+        webhook.doBatch(req, resp);
+
+        verify(resp, times(1)).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verify(webhook, timeout(5000).times(1)).processChangesetEvent(any(WebhookPayload.class));
+        assertTrue(out.toString(), out.toString().contains("\"error\""));
+    }
+
+    @Test
+    public void testReportsLenientBatchElementAsMalformed() throws Exception {
+        StringWriter out = new StringWriter();
+        StaplerResponse resp = getResponse(out);
+        setPayload("[" + AssemblaTestUtil.CHANGESET_PAYLOAD + ", {object: 'Changeset'}]");
+        webhook.doBatch(req, resp);
+
+        verify(resp, times(1)).setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        verify(webhook, timeout(5000).times(1)).processChangesetEvent(any(WebhookPayload.class));
+        assertTrue(out.toString(), out.toString().contains("\"received\":1"));
+        assertTrue(out.toString(), out.toString().contains("element 1"));
+    }
+
+    @Test
+    public void testRoutesResolvedRepoWithoutListingRepos() throws Exception {
+        SpaceTool tool = mock(SpaceTool.class);
+        given(tool.getId()).willReturn("tool-id");
+        given(tool.getName()).willReturn("git");
+        given(tool.getUrl()).willReturn("git@git.assembla.com:pavel-test.2.git");
+        given(client.getTool("space-name", "git")).willReturn(tool);
+
+        AssemblaBuildTrigger trigger = AssemblaTestUtil.getTrigger();
+        trigger.start(jenkinsRule.createFreeStyleProject("routed"), true);
+        assertTrue(AssemblaBuildTrigger.getDesc().awaitRepoResolution(5, TimeUnit.SECONDS));
+        assertNotNull(AssemblaBuildTrigger.getDesc().getRoutingTable().getRouteByUrl("git@git.assembla.com:pavel-test.2"));
+
+        webhook.processChangesetEvent(new WebhookPayloadReader().read(new StringReader(AssemblaTestUtil.CHANGESET_PAYLOAD)));
+
+        verify(client, never()).getRepoByUrl(anyString(), anyString());
+    }
+
+    private StaplerResponse getResponse(StringWriter out) throws Exception {
+        StaplerResponse resp = mock(StaplerResponse.class);
+        given(resp.getWriter()).willReturn(new PrintWriter(out));
+        return resp;
+    }
+
     private void setPayload(String payload) throws Exception{
         InputStream is = new ByteArrayInputStream(payload.getBytes());
         br = spy(new BufferedReader(new InputStreamReader(is)));
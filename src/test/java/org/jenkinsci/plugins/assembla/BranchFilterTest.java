@@ -0,0 +1,95 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.junit.Test;
+
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.Assert.*;
+
+public class BranchFilterTest {
+    @Test
+    public void testEmptyFilterMatchesEverything() {
+        assertTrue(BranchFilter.compile("").matches("master"));
+        assertTrue(BranchFilter.compile(null).matches("feature/x"));
+        assertTrue(BranchFilter.ALL.matches("develop"));
+        assertFalse(BranchFilter.ALL.matches(null));
+    }
+
+    @Test
+    public void testExactNames() {
+        BranchFilter filter = BranchFilter.compile("master, develop");
+
+        assertTrue(filter.matches("master"));
+        assertTrue(filter.matches("develop"));
+        assertFalse(filter.matches("maste"));
+        assertFalse(filter.matches("feature/master"));
+    }
+
+    @Test
+    public void testGlobs() {
+        BranchFilter filter = BranchFilter.compile("release/*,feature/**,hotfix-?");
+
+        assertTrue(filter.matches("release/1.0"));
+        assertFalse(filter.matches("release/1.0/fix"));
+        assertFalse(filter.matches("release"));
+        assertTrue(filter.matches("feature/a/b"));
+        assertTrue(filter.matches("hotfix-1"));
+        assertFalse(filter.matches("hotfix-12"));
+        assertFalse(filter.matches("master"));
+    }
+
+    @Test
+    public void testGlobsSharingPrefix() {
+        BranchFilter filter = BranchFilter.compile("rel*-x,release/*/final,re*");
+
+        assertTrue(filter.matches("release/2/final"));
+        assertTrue(filter.matches("relax-x"));
+        assertTrue(filter.matches("refs"));
+        assertFalse(filter.matches("master"));
+    }
+
+    @Test
+    public void testRegularExpressions() {
+        BranchFilter filter = BranchFilter.compile(":release-\\d+");
+
+        assertTrue(filter.matches("release-42"));
+        assertFalse(filter.matches("release-x"));
+    }
+
+    @Test
+    public void testNegation() {
+        BranchFilter filter = BranchFilter.compile("release/**, !release/old-*");
+
+        assertTrue(filter.matches("release/new"));
+        assertFalse(filter.matches("release/old-1"));
+        assertFalse(filter.matches("master"));
+    }
+
+    @Test
+    public void testOnlyNegationsMatchEverythingElse() {
+        BranchFilter filter = BranchFilter.compile("!wip/*,!tmp");
+
+        assertTrue(filter.matches("master"));
+        assertFalse(filter.matches("wip/x"));
+        assertFalse(filter.matches("tmp"));
+    }
+
+    @Test
+    public void testLargeLists() {
+        StringBuilder spec = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            spec.append("team-").append(i).append("/*,branch-").append(i).append(',');
+        }
+        BranchFilter filter = BranchFilter.compile(spec.toString());
+
+        assertTrue(filter.matches("team-499/feature"));
+        assertTrue(filter.matches("branch-250"));
+        assertFalse(filter.matches("team-500/feature"));
+        assertFalse(filter.matches("team-1/feature/deep"));
+    }
+
+    @Test(expected = PatternSyntaxException.class)
+    public void testInvalidRegularExpression() {
+        BranchFilter.compile(":release-(");
+    }
+}
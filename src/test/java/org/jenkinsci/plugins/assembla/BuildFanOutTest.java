@@ -0,0 +1,100 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.model.queue.QueueTaskFuture;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class BuildFanOutTest {
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    BuildFanOut fanOut = new BuildFanOut(4, 4);
+
+    @Test
+    public void testSchedulesPreparedBuilds() throws Exception {
+        assertEquals(7, fanOut.schedule(triggers(10), preparer(7)));
+
+        Map<String, Object> stats = fanOut.getStats();
+        assertEquals(1L, stats.get("events"));
+        assertEquals(10L, stats.get("jobs"));
+        assertEquals(7L, stats.get("builds"));
+        assertEquals(10, stats.get("maxJobs"));
+    }
+
+    @Test
+    public void testSmallFanOutRunsInline() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final List<Thread> threads = new ArrayList<>();
+
+        fanOut.schedule(triggers(2), new BuildFanOut.Preparer() {
+            @Override
+            public AssemblaBuildTrigger.BuildRequest prepare(AssemblaBuildTrigger trigger) {
+                threads.add(Thread.currentThread());
+                return null;
+            }
+        });
+
+        assertEquals(2, threads.size());
+        assertSame(caller, threads.get(0));
+        assertSame(caller, threads.get(1));
+    }
+
+    @Test
+    public void testFailedPreparationDoesNotStopOthers() throws Exception {
+        final AssemblaBuildTrigger.BuildRequest request = request();
+        final List<AssemblaBuildTrigger> triggers = triggers(6);
+
+        int scheduled = fanOut.schedule(triggers, new BuildFanOut.Preparer() {
+            @Override
+            public AssemblaBuildTrigger.BuildRequest prepare(AssemblaBuildTrigger trigger) {
+                if (trigger == triggers.get(0)) {
+                    throw new IllegalStateException("broken job");
+                }
+                return request;
+            }
+        });
+
+        assertEquals(5, scheduled);
+        verify(request, times(5)).schedule();
+    }
+
+    private List<AssemblaBuildTrigger> triggers(int count) throws Exception {
+        List<AssemblaBuildTrigger> triggers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            triggers.add(AssemblaTestUtil.getTrigger());
+        }
+        return triggers;
+    }
+
+    private BuildFanOut.Preparer preparer(final int builds) {
+        final List<AssemblaBuildTrigger> building = new ArrayList<>();
+        final AssemblaBuildTrigger.BuildRequest request = request();
+
+        return new BuildFanOut.Preparer() {
+            @Override
+            public AssemblaBuildTrigger.BuildRequest prepare(AssemblaBuildTrigger trigger) {
+                synchronized (building) {
+                    if (building.size() >= builds) {
+                        return null;
+                    }
+                    building.add(trigger);
+                }
+                return request;
+            }
+        };
+    }
+
+    private AssemblaBuildTrigger.BuildRequest request() {
+        AssemblaBuildTrigger.BuildRequest request = mock(AssemblaBuildTrigger.BuildRequest.class);
+        doReturn(mock(QueueTaskFuture.class)).when(request).schedule();
+        return request;
+    }
+}
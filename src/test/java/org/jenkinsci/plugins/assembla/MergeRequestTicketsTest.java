@@ -0,0 +1,69 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.jenkinsci.plugins.assembla.api.AssemblaClient;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.Ticket;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+
+public class MergeRequestTicketsTest {
+    AssemblaClient client = mock(AssemblaClient.class);
+    MergeRequest mr = mock(MergeRequest.class);
+    Ticket ticket = mock(Ticket.class);
+
+    @Before
+    public void setUp() {
+        MergeRequestTickets.clear();
+        AssemblaBuildTrigger.setAssembla(client);
+        given(mr.getTargetSpaceId()).willReturn("space-id");
+        given(mr.getSpaceToolId()).willReturn("tool-id");
+        given(mr.getId()).willReturn(42);
+        given(mr.getCommitId()).willReturn("abc");
+        given(client.getMergeRequestTickets(mr)).willReturn(Arrays.asList(ticket));
+    }
+
+    @Test
+    public void testSharesTicketsOfVersion() {
+        List<Ticket> tickets = MergeRequestTickets.get(mr);
+
+        assertEquals(Arrays.asList(ticket), tickets);
+        assertSame(tickets, MergeRequestTickets.get(mr));
+        verify(client, times(1)).getMergeRequestTickets(mr);
+    }
+
+    @Test
+    public void testNewVersionLooksUpAgain() {
+        MergeRequestTickets.get(mr);
+        given(mr.getCommitId()).willReturn("def");
+        MergeRequestTickets.get(mr);
+
+        verify(client, times(2)).getMergeRequestTickets(mr);
+    }
+
+    @Test
+    public void testInvalidate() {
+        MergeRequestTickets.get(mr);
+        MergeRequestTickets.invalidate(mr);
+        MergeRequestTickets.get(mr);
+
+        verify(client, times(2)).getMergeRequestTickets(mr);
+    }
+
+    @Test
+    public void testDoesNotCacheFailedLookup() {
+        given(client.getMergeRequestTickets(mr))
+                .willThrow(new AssemblaClient.AssemblaApiException("Request failed", null))
+                .willReturn(Arrays.asList(ticket));
+
+        assertTrue(MergeRequestTickets.get(mr).isEmpty());
+        assertEquals(Arrays.asList(ticket), MergeRequestTickets.get(mr));
+        verify(client, times(2)).getMergeRequestTickets(mr);
+    }
+}
@@ -0,0 +1,81 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MessageTemplateTest {
+    Map<String, String> values = new HashMap<>();
+
+    @Test
+    public void testReplacesVariables() {
+        values.put("jobName", "unit");
+        values.put("buildStatus", "SUCCESS");
+
+        assertEquals("unit finished: SUCCESS", render("$jobName finished: ${buildStatus}"));
+        assertEquals("unit_x", render("${jobName}_x"));
+    }
+
+    @Test
+    public void testLeavesUnknownVariables() {
+        values.put("jobName", "unit");
+
+        assertEquals("unit #$BUILD_NUMBER", render("$jobName #$BUILD_NUMBER"));
+        assertEquals("${a.b} $ $-", render("${a.b} $ $-"));
+    }
+
+    @Test
+    public void testEscapedDollar() {
+        values.put("jobName", "unit");
+
+        assertEquals("$jobName costs $5", render("$$jobName costs $$5"));
+    }
+
+    @Test
+    public void testValuesAreNotExpandedAgain() {
+        values.put("mrTitle", "Use $jobName");
+        values.put("jobName", "unit");
+
+        assertEquals("Use $jobName", render("$mrTitle"));
+    }
+
+    @Test
+    public void testOnlyReferencedVariablesAreComputed() {
+        final List<String> asked = new ArrayList<>();
+        MessageTemplate template = MessageTemplate.compile("MR #$mrId: $mrTitle, again $mrId");
+
+        template.render(new MessageTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                asked.add(name);
+                return name;
+            }
+        });
+
+        assertEquals(Arrays.asList("mrId", "mrTitle", "mrId"), asked);
+        assertEquals(new LinkedHashSet<>(Arrays.asList("mrId", "mrTitle")), template.getVariableNames());
+    }
+
+    @Test
+    public void testPlainAndNullTemplates() {
+        assertEquals("no variables", render("no variables"));
+        assertEquals("", render(""));
+        assertNull(render(null));
+    }
+
+    private String render(String template) {
+        return MessageTemplate.compile(template).render(new MessageTemplate.Variables() {
+            @Override
+            public String get(String name) {
+                return values.get(name);
+            }
+        });
+    }
+}
@@ -0,0 +1,177 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.XmlFile;
+import org.jenkinsci.plugins.assembla.api.AssemblaClient;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequestVersion;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class NotificationOutboxTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    AssemblaClient client = mock(AssemblaClient.class);
+    MergeRequest mr = mock(MergeRequest.class);
+    MergeRequestVersion version = mock(MergeRequestVersion.class);
+    XmlFile file;
+
+    @Before
+    public void setUp() throws Exception {
+        AssemblaBuildTrigger.setAssembla(client);
+        file = new XmlFile(new File(folder.getRoot(), "assembla-notifications.xml"));
+
+        given(mr.getTargetSpaceId()).willReturn("space-id");
+        given(mr.getSpaceToolId()).willReturn("tool-id");
+        given(version.getMergeRequestId()).willReturn(42);
+        given(version.getVersion()).willReturn(3);
+    }
+
+    @Test
+    public void testSendsRightAway() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 5);
+
+        outbox.commentMergeRequest(mr, version, "Build started");
+
+        verify(client).commentMergeRequest(mr, version, "Build started");
+        assertTrue(outbox.getPending().isEmpty());
+        assertEquals(1L, outbox.getStats().get("sent"));
+    }
+
+    @Test
+    public void testRetriesFailedNotificationWithBackoff() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 5);
+        doThrow(new AssemblaClient.ServerError("url", 503))
+                .doNothing()
+                .when(client).commentMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class), anyString());
+
+        outbox.commentMergeRequest(mr, version, "Build finished");
+        List<NotificationOutbox.Notification> pending = outbox.getPending();
+        assertEquals(1, pending.size());
+        assertEquals(1, pending.get(0).attempts);
+
+        long now = System.currentTimeMillis();
+        assertEquals(0, outbox.drain(now));
+        assertEquals(1, outbox.drain(now + NotificationOutbox.MIN_BACKOFF + 1000));
+        assertTrue(outbox.getPending().isEmpty());
+        verify(client, times(2)).commentMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class), anyString());
+    }
+
+    @Test
+    public void testDropsNotificationsAssemblaRejects() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 5);
+        doThrow(new AssemblaClient.NotFoundError("url", "")).when(client).upVoteMergeRequest(mr, version);
+
+        outbox.upVoteMergeRequest(mr, version);
+
+        assertTrue(outbox.getPending().isEmpty());
+        assertEquals(1L, outbox.getStats().get("dropped"));
+    }
+
+    @Test
+    public void testGivesUpOnCommentThatMayHaveBeenPosted() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 5);
+        doThrow(new AssemblaClient.NetworkError("url", new SocketTimeoutException("Read timed out")))
+                .when(client).commentMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class), anyString());
+
+        outbox.commentMergeRequest(mr, version, "Build finished");
+
+        assertTrue(outbox.getPending().isEmpty());
+        assertEquals(1L, outbox.getStats().get("dropped"));
+    }
+
+    @Test
+    public void testRetriesCommentThatCouldNotConnect() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 5);
+        doThrow(new AssemblaClient.NetworkError("url", new ConnectException("Connection refused")))
+                .when(client).commentMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class), anyString());
+
+        outbox.commentMergeRequest(mr, version, "Build finished");
+
+        assertEquals(1, outbox.getPending().size());
+        assertEquals(1L, outbox.getStats().get("retried"));
+    }
+
+    @Test
+    public void testNewerVoteReplacesPendingVote() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 1);
+
+        outbox.commentMergeRequest(mr, version, "Build finished");
+        outbox.upVoteMergeRequest(mr, version);
+        outbox.downVoteMergeRequest(mr, version);
+
+        List<NotificationOutbox.Notification> pending = outbox.getPending();
+        assertEquals(1, pending.size());
+        assertEquals(NotificationOutbox.Notification.Type.DOWN_VOTE, pending.get(0).type);
+        assertEquals(1L, outbox.getStats().get("collapsed"));
+        verify(client, never()).upVoteMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class));
+    }
+
+    @Test
+    public void testSkipsRepeatedVote() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 5);
+
+        outbox.upVoteMergeRequest(mr, version);
+        outbox.upVoteMergeRequest(mr, version);
+
+        verify(client, times(1)).upVoteMergeRequest(mr, version);
+        assertTrue(outbox.getPending().isEmpty());
+        assertEquals(1L, outbox.getStats().get("skippedVotes"));
+    }
+
+    @Test
+    public void testSkippedVoteLeavesFileAlone() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 5);
+        outbox.upVoteMergeRequest(mr, version);
+        assertTrue(file.getFile().delete());
+
+        outbox.upVoteMergeRequest(mr, version);
+
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testSendsChangedVote() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 5);
+        MergeRequestVersion next = mock(MergeRequestVersion.class);
+        given(next.getMergeRequestId()).willReturn(42);
+        given(next.getVersion()).willReturn(4);
+
+        outbox.upVoteMergeRequest(mr, version);
+        outbox.downVoteMergeRequest(mr, version);
+        outbox.upVoteMergeRequest(mr, version);
+        outbox.upVoteMergeRequest(mr, next);
+
+        verify(client, times(2)).upVoteMergeRequest(mr, version);
+        verify(client, times(1)).downVoteMergeRequest(mr, version);
+        verify(client, times(1)).upVoteMergeRequest(mr, next);
+        assertEquals(0L, outbox.getStats().get("skippedVotes"));
+    }
+
+    @Test
+    public void testPendingNotificationsSurviveRestart() throws Exception {
+        NotificationOutbox outbox = new NotificationOutbox(file, 1);
+        outbox.commentMergeRequest(mr, version, "Build started");
+        outbox.downVoteMergeRequest(mr, version);
+
+        NotificationOutbox restarted = new NotificationOutbox(file, 5);
+        restarted.load();
+
+        assertEquals(1, restarted.getPending().size());
+        assertEquals(1, restarted.drain(System.currentTimeMillis()));
+        verify(client).downVoteMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class));
+    }
+}
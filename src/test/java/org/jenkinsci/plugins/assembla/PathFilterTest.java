@@ -0,0 +1,51 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class PathFilterTest {
+    @Test
+    public void testEmptyFilterMatchesEverything() {
+        assertTrue(PathFilter.ALL.isEmpty());
+        assertTrue(PathFilter.ALL.matchesAny(Arrays.asList("any/file.txt")));
+    }
+
+    @Test
+    public void testIncludedDirectory() {
+        PathFilter filter = PathFilter.compile("services/billing/\n/libs/common/", "");
+
+        assertTrue(filter.matchesAny(Arrays.asList("README.md", "services/billing/src/Main.java")));
+        assertTrue(filter.matchesAny(Arrays.asList("/libs/common/pom.xml")));
+        assertFalse(filter.matchesAny(Arrays.asList("services/billing-v2/pom.xml", "services/orders/pom.xml")));
+        assertFalse(filter.matchesAny(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testGlobs() {
+        PathFilter filter = PathFilter.compile("docs/*.md, services/**/pom.xml", "");
+
+        assertTrue(filter.matchesAny(Arrays.asList("docs/index.md")));
+        assertFalse(filter.matchesAny(Arrays.asList("docs/api/index.md")));
+        assertTrue(filter.matchesAny(Arrays.asList("services/billing/api/pom.xml")));
+    }
+
+    @Test
+    public void testExcludedFilesAloneAreNotRelevant() {
+        PathFilter filter = PathFilter.compile("", "docs\n**.md");
+
+        assertFalse(filter.matchesAny(Arrays.asList("docs/index.html", "README.md", "services/CHANGES.md")));
+        assertTrue(filter.matchesAny(Arrays.asList("docs/index.html", "src/Main.java")));
+    }
+
+    @Test
+    public void testIncludeWithExclude() {
+        PathFilter filter = PathFilter.compile("services/billing", "services/billing/docs");
+
+        assertFalse(filter.matchesAny(Arrays.asList("services/billing/docs/guide.md")));
+        assertTrue(filter.matchesAny(Arrays.asList("services/billing/docs/guide.md", "services/billing/src/A.java")));
+    }
+}
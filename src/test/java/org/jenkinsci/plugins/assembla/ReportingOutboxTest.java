@@ -0,0 +1,126 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ReportingOutboxTest {
+    ReportingOutbox outbox = new ReportingOutbox(4);
+
+    @Test
+    public void testSubmitDoesNotWaitForReport() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+
+        outbox.submit("job#1", "start", new Runnable() {
+            @Override
+            public void run() {
+                await(release);
+            }
+        });
+
+        assertFalse(outbox.isIdle());
+        release.countDown();
+        assertTrue(outbox.awaitIdle(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReportsWithSameKeyRunInOrder() throws Exception {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch release = new CountDownLatch(1);
+
+        outbox.submit("job#1", "start", new Runnable() {
+            @Override
+            public void run() {
+                await(release);
+                order.add(0);
+            }
+        });
+        for (int i = 1; i < 5; i++) {
+            final int index = i;
+            outbox.submit("job#1", "report " + i, new Runnable() {
+                @Override
+                public void run() {
+                    order.add(index);
+                }
+            });
+        }
+
+        release.countDown();
+        assertTrue(outbox.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+    }
+
+    @Test
+    public void testFailedReportIsCountedAndDoesNotBlockKey() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+
+        outbox.submit("job#1", "start", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("Assembla is down");
+            }
+        });
+        outbox.submit("job#1", "result", new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(outbox.awaitIdle(5, TimeUnit.SECONDS));
+
+        Map<String, Object> stats = outbox.getStats();
+        assertEquals(2L, stats.get("submitted"));
+        assertEquals(1L, stats.get("completed"));
+        assertEquals(1L, stats.get("failed"));
+        assertEquals(0, stats.get("pending"));
+    }
+
+    @Test
+    public void testWaitsForCapacityBeyondLimit() throws Exception {
+        final ReportingOutbox bounded = new ReportingOutbox(1, 2);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable blocked = new Runnable() {
+            @Override
+            public void run() {
+                await(release);
+            }
+        };
+        bounded.submit("job#1", "start", blocked);
+        bounded.submit("job#2", "start", blocked);
+
+        final CountDownLatch queued = new CountDownLatch(1);
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                bounded.submit("job#3", "start", blocked);
+                queued.countDown();
+            }
+        });
+        submitter.start();
+
+        assertFalse(queued.await(200, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+        assertTrue(bounded.awaitIdle(5, TimeUnit.SECONDS));
+        assertEquals(3L, bounded.getStats().get("completed"));
+        assertEquals(1L, bounded.getStats().get("throttled"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
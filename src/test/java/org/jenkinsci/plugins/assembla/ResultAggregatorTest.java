@@ -0,0 +1,165 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.XmlFile;
+import hudson.model.Descriptor;
+import hudson.model.Result;
+import net.sf.json.JSONObject;
+import org.jenkinsci.plugins.assembla.api.AssemblaClient;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequest;
+import org.jenkinsci.plugins.assembla.api.models.MergeRequestVersion;
+import org.jenkinsci.plugins.assembla.api.models.Ticket;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.*;
+
+public class ResultAggregatorTest {
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    AssemblaClient client = mock(AssemblaClient.class);
+    MergeRequest mr = mock(MergeRequest.class);
+    MergeRequestVersion version = mock(MergeRequestVersion.class);
+    Ticket ticket = mock(Ticket.class);
+    XmlFile file;
+    ResultAggregator aggregator;
+
+    @Before
+    public void setUp() throws Exception {
+        AssemblaBuildTrigger.setAssembla(client);
+        file = new XmlFile(new File(folder.getRoot(), "assembla-results.xml"));
+        aggregator = new ResultAggregator(file);
+        given(version.getMergeRequestId()).willReturn(42);
+        given(version.getVersion()).willReturn(1);
+        given(client.getMergeRequestTickets(mr)).willReturn(Arrays.asList(ticket));
+    }
+
+    @Test
+    public void testPostsOneSummaryAndVote() throws Exception {
+        aggregator.add(mr, version, result("unit", Result.SUCCESS), true, true, 60000);
+        aggregator.add(mr, version, result("integration", Result.FAILURE), true, false, 60000);
+        verifyZeroInteractions(client);
+
+        aggregator.flush(aggregator.getPendingKeys().get(0));
+
+        verify(client, times(1)).commentMergeRequest(eq(mr), eq(version), anyString());
+        verify(client, times(1)).downVoteMergeRequest(mr, version);
+        verify(client, never()).upVoteMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class));
+        verify(client, times(1)).createTicketComment(eq(ticket), anyString());
+        assertEquals(1L, aggregator.getStats().get("summaries"));
+    }
+
+    @Test
+    public void testFlushesAfterWindow() throws Exception {
+        aggregator.add(mr, version, result("unit", Result.SUCCESS), true, false, 10);
+
+        verify(client, timeout(5000)).upVoteMergeRequest(mr, version);
+        assertTrue(aggregator.getPendingKeys().isEmpty());
+    }
+
+    @Test
+    public void testRebuildReplacesResult() throws Exception {
+        aggregator.add(mr, version, result("unit", Result.FAILURE), true, false, 60000);
+        aggregator.add(mr, version, result("unit", Result.SUCCESS), true, false, 60000);
+
+        aggregator.flush(aggregator.getPendingKeys().get(0));
+
+        verify(client, times(1)).upVoteMergeRequest(mr, version);
+        verify(client, never()).downVoteMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class));
+    }
+
+    @Test
+    public void testLaterWindowVotesOnAllResults() throws Exception {
+        aggregator.add(mr, version, result("unit", Result.FAILURE), true, false, 60000);
+        aggregator.flush(aggregator.getPendingKeys().get(0));
+
+        aggregator.add(mr, version, result("integration", Result.SUCCESS), true, false, 60000);
+        aggregator.flush(aggregator.getPendingKeys().get(0));
+
+        verify(client, never()).upVoteMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class));
+        verify(client, times(2)).commentMergeRequest(eq(mr), eq(version), contains("unit #7: FAILURE"));
+    }
+
+    @Test
+    public void testOpenWindowSurvivesRestart() throws Exception {
+        given(mr.getTargetSpaceId()).willReturn("space-id");
+        given(mr.getSpaceToolId()).willReturn("tool-id");
+        aggregator.add(mr, version, result("unit", Result.SUCCESS), true, false, 60000);
+
+        ResultAggregator restarted = new ResultAggregator(file);
+        restarted.load();
+        assertEquals(1, restarted.getPendingKeys().size());
+
+        restarted.flush(restarted.getPendingKeys().get(0));
+        verify(client, times(1)).upVoteMergeRequest(any(MergeRequest.class), any(MergeRequestVersion.class));
+        assertTrue(restarted.getPendingKeys().isEmpty());
+    }
+
+    @Test(expected = Descriptor.FormException.class)
+    public void testRejectsNonPositiveWindow() throws Exception {
+        JSONObject config = new JSONObject();
+        config.put("botApiKey", "key");
+        config.put("botApiSecret", "secret");
+        config.put("assemblaHost", "https://api.assembla.com/");
+        config.put("ignoreSSLErrors", false);
+        config.put("aggregateResults", true);
+        config.put("aggregationWindowSeconds", 0);
+
+        AssemblaBuildTrigger.getDesc().configure(mock(StaplerRequest.class), config);
+    }
+
+    @Test
+    public void testCombinedResult() {
+        assertEquals(Result.SUCCESS, ResultAggregator.getCombinedResult(Arrays.asList(
+                result("a", Result.SUCCESS), result("b", Result.SUCCESS))));
+        assertEquals(Result.UNSTABLE, ResultAggregator.getCombinedResult(Arrays.asList(
+                result("a", Result.SUCCESS), result("b", Result.UNSTABLE))));
+        assertEquals(Result.FAILURE, ResultAggregator.getCombinedResult(Arrays.asList(
+                result("a", Result.UNSTABLE), result("b", Result.FAILURE))));
+        assertNull(ResultAggregator.getCombinedResult(Arrays.asList(
+                result("a", Result.SUCCESS), result("b", Result.ABORTED))));
+    }
+
+    @Test
+    public void testSummary() {
+        assertEquals(
+                "Build results:\nunit #7: SUCCESS http://jenkins/job/unit/7/",
+                ResultAggregator.getSummary(Collections.singletonList(result("unit", Result.SUCCESS)))
+        );
+    }
+
+    @Test
+    public void testSummaryListsConfigurations() {
+        ResultAggregator.JobResult matrix = new ResultAggregator.JobResult(
+                "matrix", 7, Result.FAILURE, "http://jenkins/job/matrix/7/",
+                Arrays.asList(result("jdk=7", Result.SUCCESS), result("jdk=8", Result.FAILURE))
+        );
+
+        assertEquals(
+                "Build results:\nmatrix #7: FAILURE http://jenkins/job/matrix/7/"
+                        + "\n  jdk=7: SUCCESS http://jenkins/job/jdk=7/7/"
+                        + "\n  jdk=8: FAILURE http://jenkins/job/jdk=8/7/",
+                ResultAggregator.getSummary(Collections.singletonList(matrix))
+        );
+    }
+
+    private ResultAggregator.JobResult result(String job, Result result) {
+        return new ResultAggregator.JobResult(job, 7, result, "http://jenkins/job/" + job + "/7/");
+    }
+}
@@ -0,0 +1,119 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.model.AbstractProject;
+import hudson.model.FreeStyleProject;
+import org.jenkinsci.plugins.assembla.api.models.SpaceTool;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class TriggerRoutingTableTest {
+    AbstractProject<?, ?> project = mock(FreeStyleProject.class);
+    AbstractProject<?, ?> other = mock(FreeStyleProject.class);
+
+    @Test
+    public void testApplyLeavesPublishedTableUntouched() {
+        TriggerRoutingTable first = TriggerRoutingTable.EMPTY.apply(new TriggerRoutingTable.Update().add("space:git", project));
+        TriggerRoutingTable second = first.apply(new TriggerRoutingTable.Update()
+                .add("space:git", other)
+                .remove("space:git", project));
+
+        assertEquals(1, first.getJobs("space:git").size());
+        assertTrue(first.getJobs("space:git").contains(project));
+        assertEquals(1, second.getJobs("space:git").size());
+        assertTrue(second.getJobs("space:git").contains(other));
+        assertEquals(first.getVersion() + 1, second.getVersion());
+    }
+
+    @Test
+    public void testRemovingLastJobDropsRepo() {
+        TriggerRoutingTable table = TriggerRoutingTable.EMPTY
+                .apply(new TriggerRoutingTable.Update().add("space:git", project).resolve("space:git", tool()))
+                .apply(new TriggerRoutingTable.Update().remove("space:git", project));
+
+        assertEquals(0, table.size());
+        assertTrue(table.getJobs("space:git").isEmpty());
+        assertNull(table.getRouteByUrl("git@git.assembla.com:space-name"));
+        assertNull(table.getRouteByToolId("tool-id"));
+    }
+
+    @Test
+    public void testIgnoresToolResolvedAfterRepoWasDropped() {
+        TriggerRoutingTable table = TriggerRoutingTable.EMPTY
+                .apply(new TriggerRoutingTable.Update().add("space:git", project))
+                .apply(new TriggerRoutingTable.Update().remove("space:git", project))
+                .apply(new TriggerRoutingTable.Update().resolve("space:git", tool()));
+
+        assertNull(table.getTool("space:git"));
+        assertNull(table.getRouteByUrl("git@git.assembla.com:space-name"));
+        assertNull(table.getRouteByToolId("tool-id"));
+    }
+
+    @Test
+    public void testRoutesResolvedReposByCloneUrlAndToolId() {
+        SpaceTool tool = tool();
+        TriggerRoutingTable table = TriggerRoutingTable.EMPTY
+                .apply(new TriggerRoutingTable.Update().add("space:git", project))
+                .apply(new TriggerRoutingTable.Update().resolve("space:git", tool));
+
+        assertEquals("space:git", table.getRouteByUrl("git@git.assembla.com:space-name").getKey());
+        assertSame(tool, table.getRouteByUrl("https://git.assembla.com/space-name").getTool());
+        assertSame(tool, table.getRouteByToolId("tool-id").getTool());
+        assertNull(table.getRouteByUrl("git@git.assembla.com:other-space"));
+    }
+
+    @Test
+    public void testMatchesRepoPatternsOfTheSpace() {
+        AbstractProject<?, ?> generic = mock(FreeStyleProject.class);
+        TriggerRoutingTable table = TriggerRoutingTable.EMPTY.apply(new TriggerRoutingTable.Update()
+                .add("space:git", project)
+                .add("space:service-*", other)
+                .add("space:*", generic));
+
+        assertEquals(2, table.getMatchingJobs("space", "git").size());
+        assertTrue(table.getMatchingJobs("Space", "Service-Api").contains(other));
+        assertTrue(table.getMatchingJobs("space", "service-api").contains(generic));
+        assertFalse(table.getMatchingJobs("space", "service-api").contains(project));
+        assertTrue(table.getMatchingJobs("other-space", "git").isEmpty());
+        assertTrue(table.hasSpace("space"));
+    }
+
+    @Test
+    public void testRegexRepoPatternsIgnoreCase() {
+        TriggerRoutingTable table = TriggerRoutingTable.EMPTY.apply(new TriggerRoutingTable.Update()
+                .add("space::lib-\\S+", project)
+                .add("space::broken(", other));
+
+        assertTrue(table.getMatchingJobs("space", "LIB-core").contains(project));
+        assertTrue(table.getMatchingJobs("space", "lib-").isEmpty());
+        assertTrue(table.getMatchingJobs("space", "broken(").isEmpty());
+    }
+
+    @Test
+    public void testRepoPatterns() {
+        assertTrue(TriggerRoutingTable.isRepoPattern("*"));
+        assertTrue(TriggerRoutingTable.isRepoPattern("service-?"));
+        assertTrue(TriggerRoutingTable.isRepoPattern(":.*"));
+        assertFalse(TriggerRoutingTable.isRepoPattern("git-5"));
+        assertFalse(TriggerRoutingTable.isRepoPattern(null));
+    }
+
+    @Test
+    public void testCloneUrls() {
+        assertEquals(
+                Arrays.asList("git@git.assembla.com:space-name", "https://git.assembla.com/space-name"),
+                TriggerRoutingTable.getCloneUrls(tool())
+        );
+    }
+
+    private SpaceTool tool() {
+        SpaceTool tool = mock(SpaceTool.class);
+        given(tool.getId()).willReturn("tool-id");
+        given(tool.getUrl()).willReturn("git@git.assembla.com:Space-Name.git");
+        return tool;
+    }
+}
@@ -0,0 +1,144 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WebhookDispatcherTest {
+
+    @Test
+    public void testSmallSpaceIsNotStarvedByBusySpace() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(1, 1);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch gate = new CountDownLatch(1);
+
+        dispatcher.submit("busy", 1, new BlockingTask(gate));
+        List<Future<WebhookEventStatus>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(dispatcher.submit("busy", 1, new RecordingTask(order, "busy")));
+        }
+        futures.add(dispatcher.submit("small", 1, new RecordingTask(order, "small")));
+        gate.countDown();
+
+        for (Future<WebhookEventStatus> future : futures) {
+            assertEquals(WebhookEventStatus.PROCESSED, future.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(21, order.size());
+        assertTrue("Small space waited behind busy one: " + order, order.indexOf("small") <= 1);
+    }
+
+    @Test
+    public void testExposesPerSpaceStats() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(2, 2);
+        dispatcher.submit("space", 1, new RecordingTask(new ArrayList<String>(), "space")).get(5, TimeUnit.SECONDS);
+
+        Map<String, Object> stats = dispatcher.getStats();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> space = (Map<String, Object>) ((Map<String, Object>) stats.get("spaces")).get("space");
+
+        assertEquals(0, dispatcher.getQueueDepth());
+        assertEquals(1L, space.get("enqueued"));
+        assertEquals(1L, space.get("processed"));
+    }
+
+    @Test
+    public void testShedsLowPriorityWorkFirst() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(1, 1, 5);
+        CountDownLatch gate = new CountDownLatch(1);
+        occupyWorker(dispatcher, gate);
+
+        for (int i = 0; i < 4; i++) {
+            dispatcher.submit("space", 1, WebhookDispatcher.Priority.LOW, 0, new BlockingTask(gate));
+        }
+
+        try {
+            dispatcher.submit("space", 1, WebhookDispatcher.Priority.LOW, 0, new BlockingTask(gate));
+            fail("Low priority event admitted above its limit");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        dispatcher.submit("space", 1, WebhookDispatcher.Priority.HIGH, 0, new BlockingTask(gate));
+
+        try {
+            dispatcher.submit("space", 1, WebhookDispatcher.Priority.HIGH, 0, new BlockingTask(gate));
+            fail("High priority event admitted above capacity");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        Map<String, Object> stats = dispatcher.getStats();
+        assertEquals(1L, stats.get("rejectedLowPriority"));
+        assertEquals(1L, stats.get("rejectedHighPriority"));
+        gate.countDown();
+    }
+
+    @Test
+    public void testWaitsForRoomInQueue() throws Exception {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(1, 1, 1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        occupyWorker(dispatcher, gate);
+        dispatcher.submit("space", 1, new BlockingTask(gate));
+
+        new Thread() {
+            @Override
+            public void run() {
+                gate.countDown();
+            }
+        }.start();
+
+        Future<WebhookEventStatus> future = dispatcher.submit("space", 1, WebhookDispatcher.Priority.HIGH, 5000, new BlockingTask(gate));
+        assertEquals(WebhookEventStatus.PROCESSED, future.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCompletedFuture() throws Exception {
+        assertEquals(WebhookEventStatus.IGNORED, WebhookDispatcher.completed(WebhookEventStatus.IGNORED).get());
+    }
+
+    private static void occupyWorker(WebhookDispatcher dispatcher, CountDownLatch gate) throws InterruptedException {
+        dispatcher.submit("busy", 1, new BlockingTask(gate));
+        while (dispatcher.getQueueDepth() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static class BlockingTask implements Callable<WebhookEventStatus> {
+        private final CountDownLatch gate;
+
+        BlockingTask(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public WebhookEventStatus call() throws Exception {
+            gate.await(5, TimeUnit.SECONDS);
+            return WebhookEventStatus.PROCESSED;
+        }
+    }
+
+    private static class RecordingTask implements Callable<WebhookEventStatus> {
+        private final List<String> order;
+        private final String space;
+
+        RecordingTask(List<String> order, String space) {
+            this.order = order;
+            this.space = space;
+        }
+
+        @Override
+        public WebhookEventStatus call() {
+            order.add(space);
+            return WebhookEventStatus.PROCESSED;
+        }
+    }
+}
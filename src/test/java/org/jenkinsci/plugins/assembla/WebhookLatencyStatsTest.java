@@ -0,0 +1,76 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class WebhookLatencyStatsTest {
+    private static final WebhookPayload MR_PAYLOAD = new WebhookPayload("space", "updated", "Merge request",
+            "Merge Request 123: Title", "body", "author", "master", "git@git.assembla.com:space.git", "abc");
+
+    @Test
+    public void testPercentilesPerEventType() throws Exception {
+        WebhookLatencyStats stats = new WebhookLatencyStats(TimeUnit.HOURS.toMillis(1), 10);
+
+        for (int i = 1; i <= 100; i++) {
+            WebhookTrace trace = new WebhookTrace();
+            trace.queued(MR_PAYLOAD);
+            trace.add(WebhookTrace.Span.FETCH_MERGE_REQUEST, TimeUnit.MILLISECONDS.toNanos(i));
+            trace.finish();
+            stats.record(trace);
+        }
+
+        Map<String, Object> mergeRequest = getMap(getMap(stats.getStats(), "eventTypes"), "merge_request");
+        Map<String, Object> fetch = getMap(getMap(mergeRequest, "spans"), "fetchMergeRequest");
+
+        assertEquals(100L, mergeRequest.get("count"));
+        assertEquals(50000L, fetch.get("p50Micros"));
+        assertEquals(90000L, fetch.get("p90Micros"));
+        assertEquals(99000L, fetch.get("p99Micros"));
+        assertEquals(100000L, fetch.get("maxMicros"));
+        assertTrue(((List<?>) stats.getStats().get("slowEvents")).isEmpty());
+    }
+
+    @Test
+    public void testKeepsLastSlowEvents() throws Exception {
+        WebhookLatencyStats stats = new WebhookLatencyStats(0, 2);
+
+        for (int i = 0; i < 3; i++) {
+            WebhookTrace trace = new WebhookTrace();
+            trace.queued(MR_PAYLOAD);
+            trace.finish();
+            stats.record(trace);
+        }
+
+        List<?> slowEvents = (List<?>) stats.getStats().get("slowEvents");
+        assertEquals(2, slowEvents.size());
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> event = (Map<String, Object>) slowEvents.get(0);
+        assertEquals("space", event.get("space"));
+        assertEquals(123, event.get("mergeRequestId"));
+        assertTrue(((Map<?, ?>) event.get("spans")).containsKey("scheduleMicros"));
+    }
+
+    @Test
+    public void testRecordsSpansOfCurrentThreadOnly() throws Exception {
+        WebhookTrace.record(WebhookTrace.Span.SCHEDULE, System.nanoTime());
+
+        WebhookTrace trace = new WebhookTrace();
+        trace.attach();
+        WebhookTrace.record(WebhookTrace.Span.SCHEDULE, System.nanoTime() - 1000);
+        trace.finish();
+
+        assertNull(WebhookTrace.current());
+        assertTrue(trace.getSpanNanos(WebhookTrace.Span.SCHEDULE) >= 1000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getMap(Map<String, Object> map, String key) {
+        return (Map<String, Object>) map.get(key);
+    }
+}
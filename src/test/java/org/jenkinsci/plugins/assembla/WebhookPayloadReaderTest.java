@@ -0,0 +1,94 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static org.junit.Assert.*;
+
+public class WebhookPayloadReaderTest {
+
+    private final WebhookPayloadReader reader = new WebhookPayloadReader();
+
+    @Test
+    public void testReadsKnownFields() throws Exception {
+        WebhookPayload payload = reader.read(new StringReader(AssemblaTestUtil.MR_PAYLOAD));
+
+        assertEquals("pavel-test", payload.getSpaceName());
+        assertEquals("updated", payload.getAction());
+        assertEquals("Merge request", payload.getObject());
+        assertEquals("pavel.d", payload.getAuthor());
+        assertEquals("master", payload.getBranch());
+        assertEquals("git@git.assembla.com:pavel-test.2.git", payload.getRepositoryUrl());
+        assertEquals("276dc190d87eff3d28fdfad2d1e6a08a672efe13", payload.getCommitId());
+        assertEquals(2945043, (int) payload.getMergeRequestId());
+    }
+
+    @Test
+    public void testSkipsUnknownFields() throws Exception {
+        WebhookPayload payload = reader.read(new StringReader(
+                "{\"extra\": {\"nested\": [1, 2, {\"a\": null}]}, \"object\": \"Changeset\", \"branch\": null}"
+        ));
+
+        assertEquals("Changeset", payload.getObject());
+        assertNull(payload.getBranch());
+    }
+
+    @Test(expected = WebhookPayloadReader.InvalidPayloadException.class)
+    public void testRejectsTruncatedPayload() throws Exception {
+        reader.read(new StringReader("{\"object\": \"Changeset\""));
+    }
+
+    @Test(expected = WebhookPayloadReader.InvalidPayloadException.class)
+    public void testRejectsEmptyPayload() throws Exception {
+        reader.read(new StringReader(""));
+    }
+
+    @Test(expected = WebhookPayloadReader.InvalidPayloadException.class)
+    public void testRejectsNonObjectPayload() throws Exception {
+        reader.read(new StringReader("[]"));
+    }
+
+    @Test(expected = WebhookPayloadReader.InvalidPayloadException.class)
+    public void testRejectsTrailingData() throws Exception {
+        reader.read(new StringReader(AssemblaTestUtil.CHANGESET_PAYLOAD + " {}"));
+    }
+
+    @Test(expected = WebhookPayloadReader.PayloadTooLargeException.class)
+    public void testRejectsOversizedPayload() throws Exception {
+        new WebhookPayloadReader(64).read(new StringReader(AssemblaTestUtil.MR_PAYLOAD));
+    }
+
+    @Test
+    public void testReadsNewlineDelimitedBatch() throws Exception {
+        WebhookPayloadReader.Batch batch = reader.openBatch(new StringReader(
+                AssemblaTestUtil.CHANGESET_PAYLOAD + "\n" + AssemblaTestUtil.MR_PAYLOAD + "\n"
+        ), 1024 * 1024);
+
+        assertTrue(batch.hasNext());
+        assertEquals("Changeset", batch.next().getObject());
+        assertTrue(batch.hasNext());
+        assertEquals("Merge request", batch.next().getObject());
+        assertFalse(batch.hasNext());
+    }
+
+    @Test
+    public void testReadsBatchElementsStrictly() throws Exception {
+        String[] malformed = {"{object: \"Changeset\"}", "{\"object\": \'Changeset\'}", "{\"branch\": NaN}"};
+        for (String element : malformed) {
+            WebhookPayloadReader.Batch batch = reader.openBatch(new StringReader(
+                    "[" + AssemblaTestUtil.CHANGESET_PAYLOAD + ", " + element + "]"
+            ), 1024 * 1024);
+
+            assertTrue(batch.hasNext());
+            assertNotNull(batch.next());
+            assertTrue(batch.hasNext());
+            try {
+                batch.next();
+                fail("Accepted malformed element " + element);
+            } catch (WebhookPayloadReader.InvalidPayloadException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains("element 1"));
+            }
+        }
+    }
+}
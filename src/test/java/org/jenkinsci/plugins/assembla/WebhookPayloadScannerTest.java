@@ -0,0 +1,89 @@
+package org.jenkinsci.plugins.assembla;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class WebhookPayloadScannerTest {
+    // Expressions the scanner replaced, kept to check that both accept the same input
+    private static final Pattern WIKI_NAME_PATTERN = Pattern.compile("^[a-z0-9-/@:\\_-]+\\.assembla\\.com[:/](?:svn/)?(?:[a-z0-9\\_-]+[/^])?([a-z0-9\\_-]+).*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern MERGE_REQUEST_ID_PATTERN = Pattern.compile("Merge Request (\\d+)");
+
+    private static final String[] URLS = {
+            "git@git.assembla.com:qwerty^master-space.git",
+            "git@git.assembla.com:tester2/tester2-first-space.git",
+            "git@git.assembla.com:tester1-spaces-two.2.git",
+            "git@eu-git.assembla.com:pavelportfolio/pavel-test.2.git",
+            "http://git.assembla.com/vf-por-snippet",
+            "https://subversion.assembla.com/svn/gpcgames^apoc-auto",
+            "https://subversion.assembla.com/svn/clubpages",
+            "https://subversion.assembla.com/svn/paw5.rower",
+            "https://subversion.assembla.com/svn/",
+            "https://SUBVERSION.Assembla.COM/SVN/Club_Pages",
+            "http://perforce.assembla.com/breakout:11601",
+            "http://perforce-us-east.assembla.com/assembla-inc/damian-space2:12405",
+            "http://perforce.assembla.com/afconsult^afconsult_ue4.ue4test:11271",
+            "git@git.assembla.com:space/^name.git",
+            "git@git.assembla.com:.git",
+            "git@git.assembla.com:name\nnext",
+            "git@git.example.com:name.git",
+            "git@github.com:assembla.com/name.git",
+            "git.assembla.com:name",
+            "---",
+            ""
+    };
+
+    private static final String[] TITLES = {
+            "Merge Request 2945043: Redirect all old catalog pages",
+            "Re: Merge Request 2945043: Redirect all old catalog pages",
+            "Merge Request x, Merge Request 12",
+            "Merge Request 99999999999: overflow",
+            "Merge request 12",
+            "Changeset [2d77b15e83f]: Test",
+            ""
+    };
+
+    @Test
+    public void testSpaceWikiNameMatchesRegex() throws Exception {
+        for (String url : URLS) {
+            Matcher m = WIKI_NAME_PATTERN.matcher(url);
+            String expected = m.matches() ? m.group(1) : "";
+            assertEquals(url, expected, WebhookPayloadScanner.parseSpaceWikiName(url));
+        }
+    }
+
+    @Test
+    public void testMergeRequestIdMatchesRegex() throws Exception {
+        for (String title : TITLES) {
+            Matcher m = MERGE_REQUEST_ID_PATTERN.matcher(title);
+            Integer expected = null;
+            if (m.find()) {
+                try {
+                    expected = Integer.parseInt(m.group(1));
+                } catch (NumberFormatException ex) {
+                    expected = null;
+                }
+            }
+            assertEquals(title, expected, WebhookPayloadScanner.parseMergeRequestId(title));
+        }
+    }
+
+    @Test
+    public void testParseMergeRequestVersion() throws Exception {
+        assertEquals(Integer.valueOf(6), WebhookPayloadScanner.parseMergeRequestVersion(
+                "Pavel Dotsulenko (pavel.d) updated Merge Request 2945043 (6): Redirect all old catalog pages"));
+        assertNull(WebhookPayloadScanner.parseMergeRequestVersion("updated Merge Request 2945043: no version"));
+        assertNull(WebhookPayloadScanner.parseMergeRequestVersion("updated Merge Request 2945043 (x)"));
+        assertNull(WebhookPayloadScanner.parseMergeRequestVersion(null));
+    }
+
+    @Test
+    public void testNormalizeRepositoryUrl() throws Exception {
+        assertEquals("git@git.assembla.com:pavel-test.2", WebhookPayloadScanner.normalizeRepositoryUrl(" git@git.assembla.com:Pavel-Test.2.git "));
+        assertEquals("https://subversion.assembla.com/svn/clubpages", WebhookPayloadScanner.normalizeRepositoryUrl("https://subversion.assembla.com/svn/clubpages/"));
+        assertEquals("", WebhookPayloadScanner.normalizeRepositoryUrl(null));
+    }
+}
@@ -142,6 +142,32 @@ public class WebhookPayloadTest {
         assertEquals(2945043, (int)payload.getMergeRequestId());
     }
 
+    @Test
+    public void testGetMergeRequestVersion() throws Exception {
+        assertEquals(6, (int)payload.getMergeRequestVersion());
+    }
+
+    @Test
+    public void testGetEventType() throws Exception {
+        assertEquals(WebhookPayload.EventType.MERGE_REQUEST, payload.getEventType());
+    }
+
+    @Test
+    public void testGetNormalizedRepositoryUrl() throws Exception {
+        payload = setupPayload("Git@git.assembla.com:Pavel-Test.2.git/");
+        assertEquals("git@git.assembla.com:pavel-test.2", payload.getNormalizedRepositoryUrl());
+    }
+
+    @Test
+    public void testMissingFieldsAreNotClassified() throws Exception {
+        payload = new WebhookPayload(null, null, null, null, null, null, null, null, null);
+        assertEquals(WebhookPayload.EventType.OTHER, payload.getEventType());
+        assertFalse(payload.shouldTriggerBuild());
+        assertEquals("", payload.getSpaceWikiName());
+        assertNull(payload.getMergeRequestId());
+        assertNull(payload.getMergeRequestVersion());
+    }
+
     @Test
     public void testIsMergeRequestEvent() throws Exception {
         assertTrue(payload.isMergeRequestEvent());
@@ -0,0 +1,397 @@
+package org.jenkinsci.plugins.assembla;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import hudson.model.FreeStyleProject;
+import jenkins.model.Jenkins;
+import net.sf.json.JSONObject;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.kohsuke.stapler.StaplerRequest;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Replays recorded webhook payloads against {@link AssemblaWebhook} running in a local Jenkins, with the Assembla
+ * API replaced by an in-process fake. Not a unit test, run it with {@code mvn -Preplay test -Dreplay.file=...}.
+ * <p>
+ * The input holds one webhook payload per line, in the JSON shape Assembla sends. An optional numeric
+ * {@code received_at} field (epoch milliseconds) preserves the original arrival times, which are compressed by the
+ * speed-up factor. Payloads without it are sent back to back. Every repository found in the input gets a job with
+ * a trigger that builds merge requests and pushes to any branch. Jenkins has no executors, so scheduled builds stay
+ * in the queue and are counted there.
+ */
+public class WebhookReplay {
+    private static final int SENDER_THREADS = 16;
+
+    private final List<RecordedEvent> events;
+    private final double speedup;
+    private final long apiLatencyMillis;
+
+    private final JenkinsRule jenkinsRule = new JenkinsRule();
+    private final FakeAssemblaApi api = new FakeAssemblaApi();
+
+    private final List<Long> responseMicros = Collections.synchronizedList(new ArrayList<Long>());
+    private final ConcurrentMap<Integer, AtomicLong> responseCodes = new ConcurrentHashMap<>();
+
+    public WebhookReplay(List<RecordedEvent> events, double speedup, long apiLatencyMillis) {
+        this.events = events;
+        this.speedup = speedup;
+        this.apiLatencyMillis = apiLatencyMillis;
+    }
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length < 1) {
+            System.err.println("Usage: WebhookReplay <payloads.ndjson> [speed-up factor, default 1] [fake API latency ms, default 0]");
+            System.exit(2);
+        }
+
+        List<RecordedEvent> events = load(new File(args[0]));
+        double speedup = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        long apiLatencyMillis = args.length > 2 ? Long.parseLong(args[2]) : 0;
+
+        new WebhookReplay(events, speedup, apiLatencyMillis).run();
+        System.exit(0);
+    }
+
+    static List<RecordedEvent> load(File file) throws IOException {
+        List<RecordedEvent> events = new ArrayList<>();
+        WebhookPayloadReader reader = new WebhookPayloadReader();
+        JsonParser parser = new JsonParser();
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                JsonObject json = parser.parse(line).getAsJsonObject();
+                Long receivedAt = null;
+                JsonElement receivedAtField = json.remove("received_at");
+                if (receivedAtField != null && !receivedAtField.isJsonNull()) {
+                    receivedAt = receivedAtField.getAsLong();
+                }
+
+                String body = json.toString();
+                events.add(new RecordedEvent(body, receivedAt, reader.read(new StringReader(body))));
+            }
+        }
+
+        return events;
+    }
+
+    public void run() throws Throwable {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", api);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        final String apiUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        // Replays may run longer than a test is allowed to
+        jenkinsRule.timeout = 0;
+        try {
+            // Started the way JUnit starts the rule, so Jenkins gets a test description
+            jenkinsRule.apply(new Statement() {
+                @Override
+                public void evaluate() throws Throwable {
+                    setUp(apiUrl);
+                    replay();
+                }
+            }, Description.createTestDescription(WebhookReplay.class, "replay")).evaluate();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private void setUp(String apiUrl) throws Exception {
+        Jenkins jenkins = Jenkins.getInstance();
+        jenkins.setNumExecutors(0);
+
+        JSONObject config = new JSONObject();
+        config.put("botApiKey", "replay");
+        config.put("botApiSecret", "replay");
+        config.put("assemblaHost", apiUrl);
+        config.put("ignoreSSLErrors", false);
+        AssemblaBuildTrigger.getDesc().configure(mock(StaplerRequest.class), config);
+
+        for (RecordedEvent event : events) {
+            api.addRepository(event.payload.getSpaceWikiName(), event.payload.getRepositoryUrl());
+        }
+
+        for (FakeAssemblaApi.Tool tool : api.getTools()) {
+            FreeStyleProject project = jenkinsRule.createFreeStyleProject(tool.space + "-" + tool.name);
+            project.setQuietPeriod(0);
+            AssemblaBuildTrigger trigger = new AssemblaBuildTrigger(tool.space, tool.name,
+                    true, false, false, false, false, false, true, "", "", "", "");
+            project.addTrigger(trigger);
+            trigger.start(project, true);
+        }
+    }
+
+    private void replay() throws Exception {
+        AssemblaWebhook webhook = jenkinsRule.jenkins.getExtensionList(hudson.model.RootAction.class).get(AssemblaWebhook.class);
+        final URL endpoint = new URL(jenkinsRule.getURL(), AssemblaWebhook.URL + "/");
+        ExecutorService senders = Executors.newFixedThreadPool(SENDER_THREADS);
+
+        Long firstReceivedAt = events.isEmpty() ? null : events.get(0).receivedAt;
+        long start = System.nanoTime();
+
+        for (final RecordedEvent event : events) {
+            if (firstReceivedAt != null && event.receivedAt != null) {
+                long dueNanos = start + (long) (TimeUnit.MILLISECONDS.toNanos(event.receivedAt - firstReceivedAt) / speedup);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            }
+
+            senders.execute(new Runnable() {
+                @Override
+                public void run() {
+                    send(endpoint, event.body);
+                }
+            });
+        }
+
+        senders.shutdown();
+        senders.awaitTermination(1, TimeUnit.HOURS);
+        while (!webhook.getDispatcher().isIdle()) {
+            Thread.sleep(10);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        report(webhook, elapsedNanos);
+    }
+
+    private void send(URL endpoint, String body) {
+        long start = System.nanoTime();
+        int status;
+        try {
+            HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+            status = connection.getResponseCode();
+            connection.disconnect();
+        } catch (IOException ex) {
+            status = -1;
+        }
+
+        responseMicros.add(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        increment(responseCodes, status);
+    }
+
+    private static <K> void increment(ConcurrentMap<K, AtomicLong> counters, K key) {
+        AtomicLong count = counters.get(key);
+        if (count == null) {
+            AtomicLong created = new AtomicLong();
+            count = counters.putIfAbsent(key, created);
+            if (count == null) {
+                count = created;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    private void report(AssemblaWebhook webhook, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long[] sorted = new long[responseMicros.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = responseMicros.get(i);
+        }
+        Arrays.sort(sorted);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("events", events.size());
+        report.put("speedup", speedup);
+        report.put("seconds", Math.round(seconds * 1000) / 1000.0);
+        report.put("eventsPerSecond", Math.round(events.size() / seconds * 10) / 10.0);
+        report.put("responseCodes", new TreeMap<>(responseCodes));
+        report.put("responseP50Micros", percentile(sorted, 50));
+        report.put("responseP90Micros", percentile(sorted, 90));
+        report.put("responseP99Micros", percentile(sorted, 99));
+        report.put("responseMaxMicros", percentile(sorted, 100));
+        report.put("apiCalls", api.calls.get());
+        report.put("apiCallsPerEvent", events.isEmpty() ? 0 : Math.round(api.calls.get() * 100.0 / events.size()) / 100.0);
+        report.put("apiCallsByEndpoint", new TreeMap<>(api.callsByEndpoint));
+        report.put("buildsQueued", jenkinsRule.jenkins.getQueue().getItems().length);
+        report.put("processing", webhook.getLatencyStats().getStats().get("eventTypes"));
+
+        System.out.println(JSONObject.fromObject(report).toString(2));
+    }
+
+    private static long percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(sorted.length * percentile / 100.0) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    static class RecordedEvent {
+        final String body;
+        final Long receivedAt;
+        final WebhookPayload payload;
+
+        RecordedEvent(String body, Long receivedAt, WebhookPayload payload) {
+            this.body = body;
+            this.receivedAt = receivedAt;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Answers the Assembla API requests the webhook makes: repository listing, single tools and merge requests.
+     * Repositories are made up from the recorded payloads, every merge request targets its own repository.
+     */
+    class FakeAssemblaApi implements HttpHandler {
+        private final Pattern repos = Pattern.compile("/v1/spaces/([^/]+)/space_tools/repo");
+        private final Pattern mergeRequest = Pattern.compile("/v1/spaces/([^/]+)/space_tools/([^/]+)/merge_requests/(\\d+)");
+        private final Pattern tool = Pattern.compile("/v1/spaces/([^/]+)/space_tools/([^/]+)");
+
+        private final Gson gson = new Gson();
+        private final Map<String, Tool> toolsByKey = new LinkedHashMap<>();
+        final AtomicLong calls = new AtomicLong();
+        final ConcurrentMap<String, AtomicLong> callsByEndpoint = new ConcurrentHashMap<>();
+
+        synchronized void addRepository(String space, String url) {
+            String key = space + " " + url;
+            if (!space.isEmpty() && url != null && !toolsByKey.containsKey(key)) {
+                int number = toolsByKey.size() + 1;
+                toolsByKey.put(key, new Tool("tool-" + number, "repo-" + number, space, url));
+            }
+        }
+
+        synchronized List<Tool> getTools() {
+            return new ArrayList<>(toolsByKey.values());
+        }
+
+        synchronized Tool findTool(String space, String idOrName) {
+            for (Tool t : toolsByKey.values()) {
+                if (t.space.equals(space) && (t.id.equals(idOrName) || t.name.equals(idOrName))) {
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try (InputStream in = exchange.getRequestBody()) {
+                while (in.read() != -1) {
+                    // drain the request
+                }
+            }
+
+            if (apiLatencyMillis > 0) {
+                try {
+                    Thread.sleep(apiLatencyMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            Object response = "[]";
+            String endpoint = "other";
+            Matcher m;
+
+            if ((m = repos.matcher(path)).matches()) {
+                endpoint = "repos";
+                List<Tool> tools = new ArrayList<>();
+                for (Tool t : getTools()) {
+                    if (t.space.equals(m.group(1))) {
+                        tools.add(t);
+                    }
+                }
+                response = tools;
+            } else if ((m = mergeRequest.matcher(path)).matches()) {
+                endpoint = "mergeRequest";
+                Tool t = findTool(m.group(1), m.group(2));
+                response = t == null ? null : mergeRequest(m.group(1), t, Integer.parseInt(m.group(3)));
+            } else if ((m = tool.matcher(path)).matches()) {
+                endpoint = "tool";
+                response = findTool(m.group(1), m.group(2));
+            }
+
+            calls.incrementAndGet();
+            increment(callsByEndpoint, endpoint);
+
+            byte[] body = (response == null ? "" : response instanceof String ? (String) response : gson.toJson(response))
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(response == null ? 404 : 200, body.length == 0 ? -1 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+
+        private Map<String, Object> mergeRequest(String space, Tool t, int id) {
+            Map<String, Object> mr = new LinkedHashMap<>();
+            mr.put("id", id);
+            mr.put("title", "Replayed merge request " + id);
+            mr.put("description", "");
+            mr.put("source_symbol", "feature-" + id);
+            mr.put("space_tool_id", t.id);
+            mr.put("target_space_tool_id", t.id);
+            mr.put("target_space_id", space);
+            mr.put("target_symbol", "master");
+            mr.put("status", 0);
+            return mr;
+        }
+
+        class Tool {
+            final String id;
+            final String name;
+            final String space;
+            final String url;
+            final String space_id;
+
+            Tool(String id, String name, String space, String url) {
+                this.id = id;
+                this.name = name;
+                this.space = space;
+                this.url = url;
+                this.space_id = space;
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.assembla;
+
+import hudson.model.FreeStyleProject;
+import org.jenkinsci.plugins.assembla.api.models.SpaceTool;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class WebhookRouteFilterTest {
+    WebhookRouteFilter filter = new WebhookRouteFilter(60000);
+    TriggerRoutingTable table = TriggerRoutingTable.EMPTY
+            .apply(new TriggerRoutingTable.Update().add("pavel-test:git", mock(FreeStyleProject.class)));
+
+    @Test
+    public void testDropsSpacesWithoutJobs() {
+        assertFalse(filter.isRouted(payload("git@git.assembla.com:other-space.git"), table));
+        assertEquals(1L, filter.getStats().get("droppedUnknownSpace"));
+    }
+
+    @Test
+    public void testPassesResolvedRepos() {
+        SpaceTool tool = mock(SpaceTool.class);
+        given(tool.getUrl()).willReturn("git@git.assembla.com:pavel-test.git");
+        TriggerRoutingTable resolved = table.apply(new TriggerRoutingTable.Update().resolve("pavel-test:git", tool));
+
+        assertTrue(filter.isRouted(payload("git@git.assembla.com:pavel-test.git"), resolved));
+        assertEquals(1L, filter.getStats().get("routed"));
+    }
+
+    @Test
+    public void testRemembersUnroutedReposUntilRoutingChanges() {
+        WebhookPayload payload = payload("git@git.assembla.com:pavel-test.2.git");
+
+        assertTrue(filter.isRouted(payload, table));
+        filter.markUnrouted(payload, table);
+        assertFalse(filter.isRouted(payload, table));
+        assertEquals(1L, filter.getStats().get("droppedCachedUnrouted"));
+
+        TriggerRoutingTable changed = table.apply(new TriggerRoutingTable.Update().add("pavel-test:git-2", mock(FreeStyleProject.class)));
+        assertTrue(filter.isRouted(payload, changed));
+        assertEquals(2L, filter.getStats().get("lookedUp"));
+    }
+
+    @Test
+    public void testUnroutedEntriesExpire() {
+        WebhookRouteFilter expiring = new WebhookRouteFilter(0);
+        WebhookPayload payload = payload("git@git.assembla.com:pavel-test.2.git");
+
+        expiring.markUnrouted(payload, table);
+        assertTrue(expiring.isRouted(payload, table));
+    }
+
+    private WebhookPayload payload(String repositoryUrl) {
+        return new WebhookPayload("Space", "committed", "Changeset", "Changeset [abc]: Test", "Test",
+                "author", "master", repositoryUrl, "abc");
+    }
+}